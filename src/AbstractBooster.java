@@ -0,0 +1,156 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * The bookkeeping shared by every Booster: the weights of the Hypothesis and
+ * Examples, and the search for the best scoring model in a round. All of the
+ * per-Example state is allocated once in init(), so a round never allocates.
+ */
+public abstract class AbstractBooster implements Booster{
+
+	protected Candidates table;
+	protected byte[] labels;
+
+	// Where the Examples start in labels and in each prediction vector.
+	protected int offset;
+	protected double[] hypothesisWeights;
+
+	// Left null by boosters whose votes have no bias.
+	protected double[] hypothesisBiases;
+	protected double[] exampleWeights;
+
+	/*
+	 * The per-Example vectors handed to Candidates.best() when choosing a
+	 * model. Subclasses fill these in at the start of each round.
+	 */
+	protected double[] a;
+	protected double[] b;
+
+	/*
+	 * The sums of the model chosen by the last call to select().
+	 */
+	protected double[] chosen = new double[4];
+
+	/*
+	 * The total weight of the Examples the last call to select() looked at.
+	 */
+	protected double selectedWeight;
+
+	/*
+	 * When sampling, the Examples chosen this round and the vectors gathered
+	 * from them.
+	 */
+	private ExampleSampler sampler;
+	private int[] rows;
+	private double[] scale;
+	private double[] sampledA;
+	private double[] sampledB;
+
+	public void init(Candidates table, double[] weights, double[] examples){
+		this.table = table;
+		labels = table.getLabels();
+		offset = table.getOffset();
+		hypothesisWeights = weights.clone();
+		if(examples == null){
+			exampleWeights = new double[table.getExampleCount()];
+			Arrays.fill(exampleWeights, (1.0 / exampleWeights.length));
+		}
+		else{
+			exampleWeights = examples.clone();
+			normalize(exampleWeights);
+		}
+		a = new double[exampleWeights.length];
+		if(sampler != null){
+			rows = new int[exampleWeights.length];
+			scale = new double[exampleWeights.length];
+			sampledA = new double[exampleWeights.length];
+			sampledB = new double[exampleWeights.length];
+		}
+	}
+
+	/**
+	 * Only search for models over the Examples chosen by the sampler. Must be
+	 * set before init().
+	 *
+	 * @param sampler The sampler to use, or null to search every Example.
+	 */
+	public void setSampler(ExampleSampler sampler){
+		this.sampler = sampler;
+	}
+
+	/**
+	 * Has every Hypothesis scored against the current per-Example vectors,
+	 * keeping the sums of the best one in chosen.
+	 *
+	 * @param useB Whether the b vector is needed by score().
+	 * @return The index of the best Hypothesis, ties go to the first one seen.
+	 */
+	protected int select(boolean useB){
+		int count = 0;
+		selectedWeight = 0.0;
+		if(sampler != null){
+			count = sampler.sample(exampleWeights, rows, scale);
+			for(int i = 0; i < count; i++){
+				int ex = rows[i];
+				sampledA[i] = a[ex] * scale[i];
+				if(useB){
+					sampledB[i] = b[ex] * scale[i];
+				}
+				selectedWeight += exampleWeights[ex] * scale[i];
+			}
+		}
+		else{
+			for(double w : exampleWeights){
+				selectedWeight += w;
+			}
+		}
+		if(sampler != null){
+			return table.best(this, sampledA, useB ? sampledB : null, rows,
+							  count, selectedWeight, chosen);
+		}
+		return table.best(this, a, useB ? b : null, null, 0, selectedWeight,
+						  chosen);
+	}
+
+	/**
+	 * Nothing special, just a standard normalize function.  Normalization is made
+	 * for 1.0.
+	 *
+	 * @param weights The array of weights to normalize across.
+	 */
+	protected static void normalize(final double[] weights){
+		double total = 0.0;
+		for(double d : weights){
+			total += d;
+		}
+		for(int w = 0; w < weights.length; w++){
+			weights[w] = weights[w] / total;
+		}
+	}
+
+	public void writeState(DataOutput out) throws IOException{
+		Checkpointer.writeArray(out, hypothesisWeights);
+		Checkpointer.writeArray(out, exampleWeights);
+	}
+
+	public void readState(DataInput in) throws IOException{
+		Checkpointer.readArray(in, hypothesisWeights);
+		Checkpointer.readArray(in, exampleWeights);
+	}
+
+	public double[] getHypothesisWeights(){
+		return hypothesisWeights;
+	}
+
+	public double[] getHypothesisBiases(){
+		return hypothesisBiases;
+	}
+
+	public double[] getExampleWeights(){
+		return exampleWeights;
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * The implementation of AdaBoost, as specified during lecture and in the book,
+ * "Artificial Intelligence: A Modern Approach", Third Edition, Section 18.10,
+ * figure 18.34 (page 751). The only liberty taken was to ignore results from
+ * Hypothesis if a zero was returned.  This is done because the Hypothesis
+ * probably didn't have data for that day, and so to avoid skewing the model in
+ * any particular direction error is not accumulated or applied for those
+ * days.
+ * <p/>
+ * By default a model chosen more than once has its weight replaced, which
+ * reproduces the stumps Learn has always produced. Accumulating the weight of
+ * re-chosen models instead is the textbook behavior.
+ * <p/>
+ * Also by default, a model with an error of 0 or at least 0.5 is weighted
+ * like any other, as Learn always did. Asked to stop on them instead, a
+ * round that would choose one returns -1.
+ */
+public class AdaBoost extends AbstractBooster{
+
+	private boolean accumulate;
+	private boolean stopDegenerate;
+
+	/*
+	 * The sum of every Hypothesis weight, recomputed once per round rather
+	 * than once per correctly predicted Example.
+	 */
+	private double sumOfWeights;
+
+	public AdaBoost(boolean accumulate, boolean stopDegenerate){
+		this.accumulate = accumulate;
+		this.stopDegenerate = stopDegenerate;
+	}
+
+	public int round(){
+		for(int ex = 0; ex < a.length; ex++){
+			a[ex] = labels[offset + ex] * exampleWeights[ex];
+		}
+		int model = select(false);
+		byte[] pred = table.getPredictions(model);
+
+		double error = 0.0;
+		for(int ex = 0; ex < exampleWeights.length; ex++){
+			int p = pred[offset + ex];
+			if(p != 0 && p != labels[offset + ex]){
+				error += exampleWeights[ex];
+			}
+		}
+
+		// An error of 0 gives an infinite weight, and anything at or over
+		// 0.5 is no better than a coin flip
+		if(stopDegenerate && (error <= 0.0 || error >= 0.5)){
+			return -1;
+		}
+
+		// Computing the error was done with this method as it produced
+		// reliable results, whereas the method the book gives never
+		// produced useful values.
+		double alpha = Math.log((1.0 - error) / error);
+		if(accumulate){
+			hypothesisWeights[model] += alpha;
+		}
+		else{
+			hypothesisWeights[model] = alpha;
+		}
+		sumOfWeights = 0.0;
+		for(double w : hypothesisWeights){
+			sumOfWeights += w;
+		}
+
+		// Every correct prediction is scaled by the same amount, so the
+		// exponent only needs computing once
+		double scale = Math.exp(-(sumOfWeights / hypothesisWeights[model]));
+		for(int ex = 0; ex < exampleWeights.length; ex++){
+			int p = pred[offset + ex];
+			if(p != 0 && p == labels[offset + ex]){
+				exampleWeights[ex] = exampleWeights[ex] * scale;
+			}
+		}
+
+		// Normalize our results for simplicity
+		normalize(exampleWeights);
+		return model;
+	}
+
+	/**
+	 * Models are rated by their weighted agreement with the NASDAQ.
+	 */
+	public double score(double[] sums, double total){
+		return sums[0];
+	}
+}
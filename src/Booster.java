@@ -0,0 +1,81 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * A boosting algorithm that builds a weighted vote over the Hypothesis in a
+ * PredictionTable, one round at a time.
+ */
+public interface Booster{
+
+	/**
+	 * Prepares a new boosting run.
+	 *
+	 * @param candidates The Hypothesis to boost over.
+	 * @param weights    The weight each Hypothesis starts with.
+	 * @param examples   How much each Example counts for, such as how many
+	 *                   times it was drawn when resampling, or null for every
+	 *                   Example to count the same. Need not be normalized.
+	 */
+	public void init(Candidates candidates, double[] weights,
+					 double[] examples);
+
+	/**
+	 * Chooses the next model and updates the weights of the Hypothesis and
+	 * Examples accordingly. If even the best model can't improve the vote
+	 * (for AdaBoost asked to stop on them, a weighted error of 0 or at least
+	 * 0.5) nothing is updated and boosting should stop.
+	 *
+	 * @return The index of the chosen Hypothesis, or -1 if boosting has
+	 *         converged.
+	 */
+	public int round();
+
+	/**
+	 * Rates a candidate Hypothesis from the sums produced by
+	 * PredictionTable.sums() over the vectors given for this round. Higher is
+	 * better.
+	 *
+	 * @param sums  The four sums for the candidate.
+	 * @param total The total weight of the Examples the sums were taken over.
+	 * @return How good a choice the candidate is.
+	 */
+	public double score(double[] sums, double total);
+
+	/**
+	 * Writes everything needed to carry on boosting from the current round,
+	 * for checkpointing.
+	 *
+	 * @param out Where to write the state.
+	 * @throws IOException If the state couldn't be written.
+	 */
+	public void writeState(DataOutput out) throws IOException;
+
+	/**
+	 * Restores the state written by writeState(). Must be called after init()
+	 * with the same Candidates.
+	 *
+	 * @param in Where to read the state from.
+	 * @throws IOException If the state couldn't be read, or doesn't match the
+	 *                     Candidates.
+	 */
+	public void readState(DataInput in) throws IOException;
+
+	/**
+	 * @return The current weight of each Hypothesis's vote.
+	 */
+	public double[] getHypothesisWeights();
+
+	/**
+	 * @return The current bias of each Hypothesis's vote, added to the vote
+	 *         whenever it doesn't abstain, or null if the votes have none.
+	 */
+	public double[] getHypothesisBiases();
+
+	/**
+	 * @return The current weight of each Example.
+	 */
+	public double[] getExampleWeights();
+}
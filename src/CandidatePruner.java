@@ -0,0 +1,181 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Drops Hypothesis whose predictions are near copies of another's before
+ * boosting. Many of the DJ30 move together, so many of their stumps agree on
+ * almost every day, and each round would otherwise search all of them for
+ * what amounts to the same model.
+ * <p/>
+ * Two Hypothesis agree on a day if they made the same prediction (including
+ * making none). Hypothesis are taken in order, and each either joins the
+ * first kept Hypothesis it agrees with on at least the threshold fraction of
+ * days, or is kept itself. Predictions are packed into bitsets so a
+ * comparison covers 64 days at a time, and gives up as soon as too many days
+ * differ.
+ * <p/>
+ * To avoid comparing every pair, kept Hypothesis are hashed on their
+ * predictions for a few randomly chosen days, several times over. Only
+ * Hypothesis sharing a hash with a kept one are compared to it, as two
+ * Hypothesis that agree on most days very likely agree on all the days of at
+ * least one hash. A near copy missed this way is only kept, never wrongly
+ * dropped.
+ */
+public class CandidatePruner{
+
+	// The number of hashes each kept Hypothesis is filed under.
+	private static final int BANDS = 16;
+
+	// The number of days making up each hash.
+	private static final int DAYS_PER_BAND = 8;
+
+	private double threshold;
+	private long seed;
+
+	/**
+	 * @param threshold The fraction of days two Hypothesis must agree on for
+	 *                  one to be dropped.
+	 * @param seed      Seeds the choice of days to hash on, so that every
+	 *                  process prunes the same Hypothesis.
+	 */
+	public CandidatePruner(double threshold, long seed){
+		this.threshold = threshold;
+		this.seed = seed;
+	}
+
+	/**
+	 * @param table The predictions to compare, only the Examples in its
+	 *              window are used.
+	 * @return The index of each Hypothesis kept, in ascending order.
+	 */
+	public int[] prune(Candidates table){
+		int hypothesis = table.getHypothesisCount();
+		int examples = table.getExampleCount();
+		int words = (examples + 63) / 64;
+		int allowed = (int) Math.floor((1.0 - threshold) * examples + 1e-9);
+
+		// Every band hashes the same number of days, chosen at random
+		Random random = new Random(seed);
+		int perBand = Math.min(DAYS_PER_BAND, examples);
+		int[][] bandDays = new int[BANDS][perBand];
+		for(int[] days : bandDays){
+			for(int d = 0; d < perBand; d++){
+				days[d] = random.nextInt(examples);
+			}
+		}
+		ArrayList<HashMap<Long, ArrayList<Integer>>> buckets =
+				new ArrayList<HashMap<Long, ArrayList<Integer>>>();
+		for(int band = 0; band < BANDS; band++){
+			buckets.add(new HashMap<Long, ArrayList<Integer>>());
+		}
+
+		ArrayList<Integer> kept = new ArrayList<Integer>();
+		ArrayList<long[]> keptUp = new ArrayList<long[]>();
+		ArrayList<long[]> keptDown = new ArrayList<long[]>();
+		long[] up = new long[words];
+		long[] down = new long[words];
+
+		// The last Hypothesis each kept one was compared to, so a kept
+		// Hypothesis found under several hashes is only compared once
+		int[] compared = new int[hypothesis];
+		for(int h = 0; h < hypothesis; h++){
+			byte[] pred = table.getPredictions(h);
+			int offset = table.getOffset();
+			pack(pred, offset, examples, up, down);
+			long[] keys = new long[BANDS];
+			for(int band = 0; band < BANDS; band++){
+				keys[band] = key(pred, offset, bandDays[band]);
+			}
+
+			// Join the earliest kept Hypothesis that agrees closely enough
+			int match = Integer.MAX_VALUE;
+			for(int band = 0; band < BANDS; band++){
+				ArrayList<Integer> bucket = buckets.get(band).get(keys[band]);
+				if(bucket == null){
+					continue;
+				}
+				for(int k : bucket){
+					if(k >= match || compared[k] == h + 1){
+						continue;
+					}
+					compared[k] = h + 1;
+					if(agree(up, down, keptUp.get(k), keptDown.get(k),
+							 allowed)){
+						match = k;
+					}
+				}
+			}
+			if(match != Integer.MAX_VALUE){
+				continue;
+			}
+
+			int k = kept.size();
+			kept.add(h);
+			keptUp.add(up.clone());
+			keptDown.add(down.clone());
+			for(int band = 0; band < BANDS; band++){
+				ArrayList<Integer> bucket = buckets.get(band).get(keys[band]);
+				if(bucket == null){
+					bucket = new ArrayList<Integer>();
+					buckets.get(band).put(keys[band], bucket);
+				}
+				bucket.add(k);
+			}
+		}
+
+		int[] indices = new int[kept.size()];
+		for(int k = 0; k < indices.length; k++){
+			indices[k] = kept.get(k);
+		}
+		return indices;
+	}
+
+	/**
+	 * Packs predictions into one bitset of the days predicted up, and one of
+	 * the days predicted down.
+	 */
+	private static void pack(byte[] pred, int offset, int examples, long[] up,
+							 long[] down){
+		for(int w = 0; w < up.length; w++){
+			up[w] = 0;
+			down[w] = 0;
+		}
+		for(int ex = 0; ex < examples; ex++){
+			if(pred[offset + ex] > 0){
+				up[ex >> 6] |= 1L << ex;
+			}
+			else if(pred[offset + ex] < 0){
+				down[ex >> 6] |= 1L << ex;
+			}
+		}
+	}
+
+	/**
+	 * @return The predictions on the given days, two bits per day.
+	 */
+	private static long key(byte[] pred, int offset, int[] days){
+		long key = 0;
+		for(int day : days){
+			key = key << 2 | (pred[offset + day] + 1);
+		}
+		return key;
+	}
+
+	/**
+	 * @return True if the two Hypothesis differ on at most allowed days.
+	 */
+	private static boolean agree(long[] upA, long[] downA, long[] upB,
+								 long[] downB, int allowed){
+		int differ = 0;
+		for(int w = 0; w < upA.length; w++){
+			differ += Long.bitCount((upA[w] ^ upB[w]) | (downA[w] ^ downB[w]));
+			if(differ > allowed){
+				return false;
+			}
+		}
+		return true;
+	}
+}
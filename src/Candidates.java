@@ -0,0 +1,42 @@
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * The set of Hypothesis a Booster chooses its models from, along with how the
+ * NASDAQ actually moved. The predictions may be held locally, as with a
+ * PredictionTable, or spread across several worker processes.
+ */
+public interface Candidates{
+
+	/**
+	 * Finds the Hypothesis the Booster rates highest, given the per-Example
+	 * vectors for this round (see PredictionTable.sums() for how they are
+	 * accumulated).
+	 *
+	 * @param booster The Booster rating the candidates.
+	 * @param a       The first vector, indexed by Example or by sample.
+	 * @param b       The second vector, may be null if not needed.
+	 * @param rows    The Example each sample was taken from, or null if the
+	 *                vectors cover every Example.
+	 * @param count   The number of samples, ignored if rows is null.
+	 * @param total   The total weight of the Examples searched over.
+	 * @param out     Where to store the four sums of the best Hypothesis.
+	 * @return The index of the best Hypothesis, ties go to the lowest index.
+	 */
+	public int best(Booster booster, double[] a, double[] b, int[] rows,
+					int count, double total, double[] out);
+
+	public int getExampleCount();
+
+	/**
+	 * @return Where this set's Examples start in the arrays returned by
+	 *         getLabels() and getPredictions(), which may be shared with a
+	 *         larger window of days.
+	 */
+	public int getOffset();
+
+	public int getHypothesisCount();
+
+	public byte[] getLabels();
+
+	public byte[] getPredictions(int h);
+}
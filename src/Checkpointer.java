@@ -0,0 +1,235 @@
+import java.io.*;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Saves the state of a boosting run every so often, so a run that is killed
+ * partway through can carry on from its last checkpoint instead of starting
+ * over.
+ * <p/>
+ * A checkpoint holds the round boosting got to, the state of the Booster
+ * (the weights of every Hypothesis and Example, plus whatever else that
+ * Booster keeps) and of EarlyStopping, along with a fingerprint of the data
+ * and settings the run was started with. A checkpoint is only resumed from
+ * by a run with the same fingerprint.
+ * <p/>
+ * The state is copied on the training thread, which is cheap next to a
+ * round, and written to disk on a thread of its own. If the disk falls behind,
+ * only the latest state waits to be written, and any older one still waiting
+ * is dropped, as it would be replaced straight away anyway. Each checkpoint
+ * is written to a temporary file which then replaces the old checkpoint, so
+ * a run killed while writing leaves the previous checkpoint intact.
+ */
+public class Checkpointer{
+
+	private static final int MAGIC = 0x4d4c4350;
+
+	// Bumped whenever the layout of a checkpoint changes.
+	private static final int VERSION = 2;
+
+	private File file;
+	private String fingerprint;
+	private ThreadPoolExecutor writer;
+
+	/**
+	 * @param file        Where to keep the checkpoint.
+	 * @param fingerprint Identifies the run, see fingerprint().
+	 */
+	public Checkpointer(File file, String fingerprint){
+		this.file = file;
+		this.fingerprint = fingerprint;
+		writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(1),
+				new ThreadPoolExecutor.DiscardOldestPolicy());
+	}
+
+	/**
+	 * Fingerprints everything a checkpoint depends on, so that one isn't
+	 * resumed on different data or with a different Booster.
+	 * <p/>
+	 * Every option that changes what a round does is included. The number of
+	 * rounds isn't, so a finished run can be resumed to boost for longer, and
+	 * neither are options like the workers that only change how a round is
+	 * done.
+	 *
+	 * @param data       A fingerprint of the input files, or null if there
+	 *                   are none.
+	 * @param options    The options boosting was run with.
+	 * @param hypothesis The Hypothesis boosted over.
+	 * @param training   The days boosted over.
+	 * @param validation The days held out.
+	 * @return The fingerprint, as a hex string.
+	 */
+	public static String fingerprint(String data, LearnOptions options,
+									 ArrayList<Hypothesis> hypothesis,
+									 List<Example> training,
+									 List<Example> validation){
+		MessageDigest digest = PredictionCache.newDigest();
+		StringBuilder sb = new StringBuilder();
+		sb.append(data).append('\n');
+		sb.append(options.booster).append(',').append(options.accumulate)
+		  .append(',').append(options.stopDegenerate).append(',')
+		  .append(options.validation).append(',').append(options.patience)
+		  .append(',').append(options.trim).append(',')
+		  .append(options.gossTop).append(',').append(options.gossOther)
+		  .append(',').append(options.seed).append(',')
+		  .append(options.coMovement).append(',').append(options.prune)
+		  .append('\n');
+		for(Hypothesis h : hypothesis){
+			sb.append(h).append('\n');
+		}
+		sb.append(training.size()).append(',').append(validation.size())
+		  .append('\n');
+		digest.update(sb.toString().getBytes());
+		update(digest, training);
+		update(digest, validation);
+		return PredictionCache.hex(digest.digest());
+	}
+
+	private static void update(MessageDigest digest, List<Example> examples){
+		for(Example ex : examples){
+			digest.update((ex.date + "," + ex.open + "," + ex.close + "\n")
+								  .getBytes());
+		}
+	}
+
+	/**
+	 * Saves the state after a round. The state is copied before returning,
+	 * and written out in the background.
+	 *
+	 * @param round   The number of rounds done.
+	 * @param booster The Booster.
+	 * @param monitor The EarlyStopping watching the Booster.
+	 */
+	public void save(int round, Booster booster, EarlyStopping monitor){
+		final byte[] state;
+		try{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(fingerprint);
+			out.writeInt(round);
+			booster.writeState(out);
+			monitor.writeState(out);
+			out.flush();
+			state = bytes.toByteArray();
+		}
+		catch(IOException e){
+			throw new IllegalStateException("Writing to memory can't fail", e);
+		}
+		writer.submit(new Runnable(){
+			public void run(){
+				write(state);
+			}
+		});
+	}
+
+	/**
+	 * Restores the state saved by the last checkpoint. The Booster and
+	 * EarlyStopping must already be started on the same data.
+	 *
+	 * @param booster The Booster to restore.
+	 * @param monitor The EarlyStopping to restore.
+	 * @return The number of rounds done before the checkpoint.
+	 * @throws FileNotFoundException If there is no checkpoint.
+	 * @throws IOException           If the checkpoint couldn't be read, or is
+	 *                               for a different run.
+	 */
+	public int restore(Booster booster, EarlyStopping monitor)
+			throws IOException{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try{
+			if(in.readInt() != MAGIC || in.readInt() != VERSION){
+				throw new IOException("'" + file + "' isn't a checkpoint");
+			}
+			if(!in.readUTF().equals(fingerprint)){
+				throw new IOException("'" + file + "' was saved from "
+									  + "different data or settings");
+			}
+			int round = in.readInt();
+			booster.readState(in);
+			monitor.readState(in);
+			return round;
+		}
+		finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Waits for any checkpoint still being written.
+	 */
+	public void close(){
+		writer.shutdown();
+		try{
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Replaces the checkpoint file. Failing to save isn't fatal, the run only
+	 * loses the chance to resume from this round.
+	 */
+	private void write(byte[] state){
+		File temp = new File(file.getPath() + ".tmp");
+		try{
+			FileOutputStream out = new FileOutputStream(temp);
+			try{
+				out.write(state);
+				out.getFD().sync();
+			}
+			finally{
+				out.close();
+			}
+
+			// Renaming over a file fails on some platforms
+			if(!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))){
+				throw new IOException("Unable to rename '" + temp + "'");
+			}
+		}
+		catch(IOException e){
+			System.err.println("Unable to save checkpoint to '" + file
+							   + "'! Continuing...");
+		}
+	}
+
+	/**
+	 * Writes an array, for use in writeState().
+	 */
+	public static void writeArray(DataOutput out, double[] values)
+			throws IOException{
+		out.writeInt(values.length);
+		for(double v : values){
+			out.writeDouble(v);
+		}
+	}
+
+	/**
+	 * Reads an array written by writeArray(), for use in readState().
+	 *
+	 * @param in     Where to read from.
+	 * @param values Where to put the array, which must be the same length.
+	 * @throws IOException If the array couldn't be read, or was a different
+	 *                     length.
+	 */
+	public static void readArray(DataInput in, double[] values)
+			throws IOException{
+		if(in.readInt() != values.length){
+			throw new IOException("Checkpoint doesn't match the data");
+		}
+		for(int i = 0; i < values.length; i++){
+			values[i] = in.readDouble();
+		}
+	}
+}
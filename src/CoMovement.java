@@ -0,0 +1,111 @@
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Author:      Grant Kurtz
+ *
+ * This Hypothesis assumes if a group of stocks (say, the banks JPM, BAC and
+ * AXP) all closed higher than they opened, then the NASDAQ will do the same,
+ * and likewise if they all fell. When the group is split, or any of them has
+ * no data for the day, it makes no prediction.
+ */
+public class CoMovement implements Hypothesis{
+
+	// Separates the symbols in the stringified form, "CO,JPM+BAC+AXP".
+	public static final String SEPARATOR = "+";
+
+	private static HashMap<String, HashMap<String, ModelData>> data = null;
+	private String[] symbols;
+	private double weight;
+	private double bias;
+
+	/*
+	 * The movements of the group, if available, for evaluating every day at
+	 * once.
+	 */
+	private MovementBitsets bitsets;
+
+	public CoMovement(HashMap<String, HashMap<String, ModelData>> data,
+					  String[] symbols){
+		CoMovement.data = data;
+		this.symbols = symbols;
+	}
+
+	/**
+	 * @param bitsets The movements of every stock in the group, used by
+	 *                predictions().
+	 */
+	public CoMovement(HashMap<String, HashMap<String, ModelData>> data,
+					  String[] symbols, MovementBitsets bitsets){
+		this(data, symbols);
+		this.bitsets = bitsets;
+	}
+
+	/**
+	 * Returns the direction the whole group moved in.
+	 *
+	 * @param ex	The example to test against.
+	 * @return		1 if every stock in the group went up, -1 if every one went
+	 * 				down, and 0 if they were split or any had missing data.
+	 */
+	public int prediction(Example ex){
+		HashMap<String, ModelData> day = data.get(ex.date);
+		if(day == null)
+			return 0;
+		int direction = 0;
+		for(String symbol : symbols){
+			ModelData model = day.get(symbol);
+			if(model == null)
+				return 0;
+			int move = model.close > model.open ? 1 : -1;
+			if(direction != 0 && move != direction)
+				return 0;
+			direction = move;
+		}
+		return direction;
+	}
+
+	/**
+	 * Predicts every day at once from the bitsets of the group.
+	 *
+	 * @param examples The days to predict.
+	 * @return The same as prediction() for each day, or null if the bitsets
+	 *         aren't over those days.
+	 */
+	public byte[] predictions(List<Example> examples){
+		if(bitsets == null || !bitsets.covers(examples))
+			return null;
+		return bitsets.predictions(symbols);
+	}
+
+	public String[] getSymbols(){
+		return symbols;
+	}
+
+	public double getWeight(){
+		return weight;
+	}
+
+	public void setWeight(double weight){
+		this.weight = weight;
+	}
+
+	public double getBias(){
+		return bias;
+	}
+
+	public void setBias(double bias){
+		this.bias = bias;
+	}
+
+	public String toString(){
+		StringBuilder sb = new StringBuilder("CO,");
+		for(int s = 0; s < symbols.length; s++){
+			if(s > 0){
+				sb.append(SEPARATOR);
+			}
+			sb.append(symbols[s]);
+		}
+		return sb.toString();
+	}
+}
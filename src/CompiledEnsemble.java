@@ -0,0 +1,247 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * A flattened form of a set of weighted Hypothesis, used for scoring. Each
+ * stump is reduced to the slot it reads from a day's movement vector and its
+ * weight, so scoring a day is a single loop over primitive arrays instead of a
+ * virtual prediction call (and two hash lookups) per stump.
+ * <p/>
+ * Aggregate stumps (TotalMovement) don't read a single symbol, so the breadth
+ * of the day is computed once when the day is loaded and stored in a reserved
+ * slot at the end of the movement vector. Likewise, whether each group of a
+ * CoMovement moved together is stored in a slot of its own after that.
+ */
+public class CompiledEnsemble{
+
+	// Type codes for the compiled stumps.
+	public static final byte PARALLEL = 0;
+	public static final byte TOTAL = 1;
+	public static final byte GROUP = 2;
+
+	/*
+	 * Maps a symbol to its position in a day's movement vector.
+	 */
+	private HashMap<String, Integer> symbolIds;
+
+	/*
+	 * The symbols referenced by the ensemble, indexed by their id.
+	 */
+	private String[] symbols;
+
+	/*
+	 * Parallel arrays describing each stump: what kind it was, which slot of
+	 * the movement vector it votes with, and the weight and bias of that vote.
+	 */
+	private byte[] types;
+	private int[] slots;
+	private double[] weights;
+	private double[] biases;
+
+	/*
+	 * The symbol ids of each CoMovement group, in the order of their slots.
+	 */
+	private ArrayList<int[]> groups;
+
+	private CompiledEnsemble(int size){
+		symbolIds = new HashMap<String, Integer>();
+		types = new byte[size];
+		slots = new int[size];
+		weights = new double[size];
+		biases = new double[size];
+		groups = new ArrayList<int[]>();
+	}
+
+	/**
+	 * Converts a loaded set of Hypothesis into their flattened form. The
+	 * weights and biases are copied, so later changes to the Hypothesis are not seen by
+	 * the compiled ensemble.
+	 *
+	 * @param hypothesis The Hypothesis to compile.
+	 * @return The compiled ensemble.
+	 * @throws IllegalArgumentException If a Hypothesis has no compiled form.
+	 */
+	public static CompiledEnsemble compile(ArrayList<Hypothesis> hypothesis){
+		CompiledEnsemble ensemble = new CompiledEnsemble(hypothesis.size());
+		ArrayList<String> symbols = new ArrayList<String>();
+
+		// Symbols are numbered first, the breadth and group slots are
+		// appended after the last one once we know how many there are
+		for(int i = 0; i < hypothesis.size(); i++){
+			Hypothesis h = hypothesis.get(i);
+			if(h instanceof ParallelMovement){
+				ensemble.types[i] = PARALLEL;
+				ensemble.slots[i] = ensemble.number(
+						((ParallelMovement) h).getSymbol(), symbols);
+			}
+			else if(h instanceof TotalMovement){
+				ensemble.types[i] = TOTAL;
+			}
+			else if(h instanceof CoMovement){
+				String[] group = ((CoMovement) h).getSymbols();
+				int[] ids = new int[group.length];
+				for(int s = 0; s < group.length; s++){
+					ids[s] = ensemble.number(group[s], symbols);
+				}
+				ensemble.types[i] = GROUP;
+				ensemble.slots[i] = ensemble.groups.size();
+				ensemble.groups.add(ids);
+			}
+			else{
+				throw new IllegalArgumentException("Unable to compile '" + h
+												   + "'");
+			}
+			ensemble.weights[i] = h.getWeight();
+			ensemble.biases[i] = h.getBias();
+		}
+		ensemble.symbols = symbols.toArray(new String[symbols.size()]);
+		for(int i = 0; i < ensemble.types.length; i++){
+			if(ensemble.types[i] == TOTAL){
+				ensemble.slots[i] = ensemble.symbols.length;
+			}
+			else if(ensemble.types[i] == GROUP){
+				ensemble.slots[i] += ensemble.symbols.length + 1;
+			}
+		}
+		return ensemble;
+	}
+
+	/**
+	 * @return The id of the symbol, numbering it if it hasn't been yet.
+	 */
+	private int number(String symbol, ArrayList<String> symbols){
+		Integer id = symbolIds.get(symbol);
+		if(id == null){
+			id = symbols.size();
+			symbols.add(symbol);
+			symbolIds.put(symbol, id);
+		}
+		return id;
+	}
+
+	/**
+	 * @return A movement vector large enough for this ensemble. Callers should
+	 *         allocate it once and reuse it for every day scored.
+	 */
+	public byte[] newMovementVector(){
+		return new byte[symbols.length + 1 + groups.size()];
+	}
+
+	/**
+	 * Converts a day's market data into a movement vector. Every symbol in the
+	 * data counts towards the breadth of the day, as TotalMovement would see
+	 * it, even if no stump in the ensemble reads that symbol directly.
+	 *
+	 * @param day   The market data for a single day, may be null if there was
+	 *              no data for that day.
+	 * @param moves The movement vector to fill, from newMovementVector().
+	 */
+	public void loadDay(HashMap<String, ModelData> day, byte[] moves){
+		Arrays.fill(moves, (byte) 0);
+		if(day == null){
+			return;
+		}
+		int breadth = 0;
+		for(ModelData md : day.values()){
+			int move = md.close > md.open ? 1 : -1;
+			breadth += move;
+			Integer id = symbolIds.get(md.symbol);
+			if(id != null){
+				moves[id] = (byte) move;
+			}
+		}
+		moves[symbols.length] = (byte) (breadth == 0 ? 0 : breadth > 0 ? 1
+																	   : -1);
+
+		// A group moved together if every member moved the same way, a
+		// member with no data leaves its slot at 0
+		for(int g = 0; g < groups.size(); g++){
+			int[] ids = groups.get(g);
+			int direction = moves[ids[0]];
+			for(int s = 1; s < ids.length && direction != 0; s++){
+				if(moves[ids[s]] != direction){
+					direction = 0;
+				}
+			}
+			moves[symbols.length + 1 + g] = (byte) direction;
+		}
+	}
+
+	/**
+	 * Casts the weighted vote of every stump for a loaded day. Nothing is
+	 * allocated, so this is safe to call in a tight loop. A stump that doesn't
+	 * abstain also adds its bias, which squaring its prediction picks out
+	 * without a branch.
+	 *
+	 * @param moves A movement vector filled by loadDay().
+	 * @return The total vote, positive for "Up" and negative for "Down".
+	 */
+	public double score(byte[] moves){
+		double vote = 0.0;
+		for(int i = 0; i < slots.length; i++){
+			int move = moves[slots[i]];
+			vote += move * weights[i] + move * move * biases[i];
+		}
+		return vote;
+	}
+
+	/**
+	 * Casts the weighted vote of every stump for a day already evaluated, such
+	 * as one read back from a PredictionCache, instead of a loaded day.
+	 *
+	 * @param table The predictions of the same Hypothesis, in the same order,
+	 *              as the ensemble was compiled from.
+	 * @param day   The day to score, as an index into the table.
+	 * @return The total vote, positive for "Up" and negative for "Down".
+	 */
+	public double score(PredictionTable table, int day){
+		double vote = 0.0;
+		for(int i = 0; i < weights.length; i++){
+			int move = table.getPredictions(i)[day];
+			vote += move * weights[i] + move * move * biases[i];
+		}
+		return vote;
+	}
+
+	/**
+	 * @return The number of stumps in the ensemble.
+	 */
+	public int size(){
+		return slots.length;
+	}
+
+	/**
+	 * @param i The stump to describe.
+	 * @return The type code of the stump.
+	 */
+	public byte getType(int i){
+		return types[i];
+	}
+
+	/**
+	 * @param i The stump to describe.
+	 * @return The symbol the stump votes with, or null for aggregate stumps.
+	 */
+	public String getSymbol(int i){
+		return types[i] == PARALLEL ? symbols[slots[i]] : null;
+	}
+
+	/**
+	 * @param i The stump to describe.
+	 * @return The weight of the stump's vote.
+	 */
+	public double getWeight(int i){
+		return weights[i];
+	}
+
+	/**
+	 * @param i The stump to describe.
+	 * @return The bias added to the stump's vote when it doesn't abstain.
+	 */
+	public double getBias(int i){
+		return biases[i];
+	}
+}
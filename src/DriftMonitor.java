@@ -0,0 +1,190 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Watches how the stumps do on each new day, once the NASDAQ's real
+ * movement is known, and decides when they have stopped working.
+ * <p/>
+ * A rolling accuracy and margin over the last few days are kept for
+ * reporting, but a few bad days in a row happen to any model, so the
+ * decision is made by a Page-Hinkley test on the errors instead. It sums how
+ * far each day's error is above the average error so far (less a small
+ * allowance, delta), and signals drift once that sum has climbed more than
+ * lambda above its lowest point. A model that is wrong a steady 25% of the
+ * time never drifts, however unlucky a week it has, while one that starts
+ * being wrong more often than it used to does within a few days.
+ * <p/>
+ * The test only notices the error rate changing, so stumps that are no
+ * better than a coin from the first day never drift by it. For those, the
+ * rolling accuracy falling below a floor once the window is full counts as
+ * drift too.
+ */
+public class DriftMonitor{
+
+	private int window;
+	private double delta;
+	private double lambda;
+	private int warmup;
+	private double floor;
+
+	// The last few days, as a circular buffer.
+	private boolean[] correct;
+	private double[] margins;
+	private int next;
+	private int filled;
+
+	// The Page-Hinkley statistics.
+	private int days;
+	private double meanError;
+	private double cumulative;
+	private double minimum;
+
+	/**
+	 * @param window How many days the rolling accuracy and margin are over.
+	 * @param delta  How much worse than average the error may get without
+	 *               counting towards drift.
+	 * @param lambda How far the summed error may climb before it is drift.
+	 * @param warmup How many days to see before signalling drift at all.
+	 * @param floor  The lowest rolling accuracy that isn't drift.
+	 */
+	public DriftMonitor(int window, double delta, double lambda, int warmup,
+						double floor){
+		this.window = window;
+		this.delta = delta;
+		this.lambda = lambda;
+		this.warmup = warmup;
+		this.floor = floor;
+		reset();
+	}
+
+	/**
+	 * Forgets every day seen, such as after retraining.
+	 */
+	public void reset(){
+		correct = new boolean[window];
+		margins = new double[window];
+		next = 0;
+		filled = 0;
+		days = 0;
+		meanError = 0.0;
+		cumulative = 0.0;
+		minimum = 0.0;
+	}
+
+	/**
+	 * Adds a day.
+	 *
+	 * @param right  True if the prediction for the day was right.
+	 * @param margin How strongly the stumps voted for the real movement, from
+	 *               -1 (all against it) to 1 (all for it).
+	 * @return True if the stumps have drifted.
+	 */
+	public boolean update(boolean right, double margin){
+		correct[next] = right;
+		margins[next] = margin;
+		next = (next + 1) % window;
+		filled = Math.min(filled + 1, window);
+
+		double error = right ? 0.0 : 1.0;
+		days++;
+		meanError += (error - meanError) / days;
+		cumulative += error - meanError - delta;
+		minimum = Math.min(minimum, cumulative);
+		return drifted();
+	}
+
+	/**
+	 * @return True if the stumps have drifted.
+	 */
+	public boolean drifted(){
+		if(days < warmup){
+			return false;
+		}
+		return getStatistic() > lambda
+			   || (filled == window && getAccuracy() < floor);
+	}
+
+	/**
+	 * @return How far the summed error is above its lowest point.
+	 */
+	public double getStatistic(){
+		return cumulative - minimum;
+	}
+
+	/**
+	 * @return The fraction of the last few days predicted right.
+	 */
+	public double getAccuracy(){
+		int right = 0;
+		for(int d = 0; d < filled; d++){
+			if(correct[d]){
+				right++;
+			}
+		}
+		return filled == 0 ? 0.0 : (double) right / filled;
+	}
+
+	/**
+	 * @return The average margin over the last few days.
+	 */
+	public double getMargin(){
+		double total = 0.0;
+		for(int d = 0; d < filled; d++){
+			total += margins[d];
+		}
+		return filled == 0 ? 0.0 : total / filled;
+	}
+
+	/**
+	 * @return The number of days seen since the last reset.
+	 */
+	public int getDays(){
+		return days;
+	}
+
+	/**
+	 * Writes everything needed to carry on monitoring in a later run.
+	 *
+	 * @param out Where to write the state.
+	 * @throws IOException If the state couldn't be written.
+	 */
+	public void writeState(DataOutput out) throws IOException{
+		out.writeInt(window);
+		for(int d = 0; d < window; d++){
+			out.writeBoolean(correct[d]);
+			out.writeDouble(margins[d]);
+		}
+		out.writeInt(next);
+		out.writeInt(filled);
+		out.writeInt(days);
+		out.writeDouble(meanError);
+		out.writeDouble(cumulative);
+		out.writeDouble(minimum);
+	}
+
+	/**
+	 * Restores the state written by writeState().
+	 *
+	 * @param in Where to read the state from.
+	 * @throws IOException If the state couldn't be read, or was for a
+	 *                     different window.
+	 */
+	public void readState(DataInput in) throws IOException{
+		if(in.readInt() != window){
+			throw new IOException("Saved with a different window");
+		}
+		for(int d = 0; d < window; d++){
+			correct[d] = in.readBoolean();
+			margins[d] = in.readDouble();
+		}
+		next = in.readInt();
+		filled = in.readInt();
+		days = in.readInt();
+		meanError = in.readDouble();
+		cumulative = in.readDouble();
+		minimum = in.readDouble();
+	}
+}
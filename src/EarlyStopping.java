@@ -0,0 +1,234 @@
+import java.io.BufferedWriter;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Watches the accuracy of the weighted vote on a set of monitored Examples
+ * after every boosting round, and decides when boosting should stop. The vote
+ * for each monitored Example is kept up to date as weights change, so a round
+ * only costs a pass over the monitored Examples.
+ * <p/>
+ * When monitoring a held-out validation slice, boosting stops once accuracy
+ * hasn't improved for the given number of rounds, and the weights from the
+ * best round are kept. Without a validation slice the training Examples are
+ * monitored instead, purely to record the curve.
+ */
+public class EarlyStopping{
+
+	// The reasons boosting may stop.
+	public static final String ROUNDS = "rounds";
+	public static final String PATIENCE = "patience";
+	public static final String DEGENERATE = "degenerate";
+
+	private Candidates monitored;
+	private int patience;
+
+	/*
+	 * The current vote for each monitored Example, and the weights and
+	 * biases it was cast with.
+	 */
+	private double[] votes;
+	private double[] weights;
+	private double[] biases;
+
+	private int round;
+	private int bestRound;
+	private double bestAccuracy;
+	private double[] bestWeights;
+	private double[] bestBiases;
+	private String reason = ROUNDS;
+
+	/*
+	 * The accuracy after each round, starting with the weights boosting
+	 * started from.
+	 */
+	private ArrayList<Double> curve = new ArrayList<Double>();
+
+	/**
+	 * @param monitored The Examples to measure accuracy on.
+	 * @param patience  How many rounds without improvement to allow before
+	 *                  stopping, or 0 to never stop for lack of improvement.
+	 */
+	public EarlyStopping(Candidates monitored, int patience){
+		this.monitored = monitored;
+		this.patience = patience;
+		votes = new double[monitored.getExampleCount()];
+	}
+
+	/**
+	 * Records the weights boosting starts from as round 0.
+	 *
+	 * @param start The initial weight of each Hypothesis.
+	 * @param bias  The initial bias of each Hypothesis, or null if the votes
+	 *              have none.
+	 */
+	public void start(double[] start, double[] bias){
+		weights = start.clone();
+		biases = bias == null ? new double[weights.length] : bias.clone();
+		for(int h = 0; h < weights.length; h++){
+			addVotes(h, weights[h], biases[h]);
+		}
+		round = 0;
+		bestAccuracy = accuracy();
+		bestWeights = weights.clone();
+		bestBiases = biases.clone();
+		curve.add(bestAccuracy);
+	}
+
+	/**
+	 * Records the outcome of a boosting round.
+	 *
+	 * @param model   The Hypothesis chosen in the round.
+	 * @param current The weight of each Hypothesis after the round.
+	 * @param bias    The bias of each Hypothesis after the round, or null if
+	 *                the votes have none.
+	 * @return True if boosting should stop.
+	 */
+	public boolean update(int model, double[] current, double[] bias){
+		round++;
+		double next = bias == null ? 0.0 : bias[model];
+		addVotes(model, current[model] - weights[model],
+				 next - biases[model]);
+		weights[model] = current[model];
+		biases[model] = next;
+		double accuracy = accuracy();
+		curve.add(accuracy);
+
+		// Without patience, the last round is always the one we keep
+		if(patience == 0 || accuracy > bestAccuracy){
+			bestRound = round;
+			bestAccuracy = accuracy;
+			System.arraycopy(weights, 0, bestWeights, 0, weights.length);
+			System.arraycopy(biases, 0, bestBiases, 0, biases.length);
+		}
+		else if(round - bestRound >= patience){
+			reason = PATIENCE;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Records that boosting stopped because no model could improve the vote.
+	 */
+	public void degenerate(){
+		reason = DEGENERATE;
+	}
+
+	/**
+	 * Writes the stopping point and the accuracy after each round.
+	 *
+	 * @param output The file handler to output the curve to.
+	 * @throws IOException If the curve couldn't be written.
+	 */
+	public void write(BufferedWriter output) throws IOException{
+		output.write("# rounds=" + bestRound + " stopped=" + reason + "\n");
+		output.write("round,accuracy\n");
+		for(int r = 0; r < curve.size(); r++){
+			output.write(r + "," + curve.get(r) + "\n");
+		}
+	}
+
+	/**
+	 * Writes everything needed to carry on monitoring from the current round,
+	 * for checkpointing.
+	 *
+	 * @param out Where to write the state.
+	 * @throws IOException If the state couldn't be written.
+	 */
+	public void writeState(DataOutput out) throws IOException{
+		out.writeInt(round);
+		out.writeInt(bestRound);
+		out.writeDouble(bestAccuracy);
+		out.writeUTF(reason);
+		Checkpointer.writeArray(out, votes);
+		Checkpointer.writeArray(out, weights);
+		Checkpointer.writeArray(out, bestWeights);
+		Checkpointer.writeArray(out, biases);
+		Checkpointer.writeArray(out, bestBiases);
+		out.writeInt(curve.size());
+		for(double accuracy : curve){
+			out.writeDouble(accuracy);
+		}
+	}
+
+	/**
+	 * Restores the state written by writeState(). Must be called after
+	 * start().
+	 *
+	 * @param in Where to read the state from.
+	 * @throws IOException If the state couldn't be read, or doesn't match the
+	 *                     monitored Examples.
+	 */
+	public void readState(DataInput in) throws IOException{
+		round = in.readInt();
+		bestRound = in.readInt();
+		bestAccuracy = in.readDouble();
+		reason = in.readUTF();
+		Checkpointer.readArray(in, votes);
+		Checkpointer.readArray(in, weights);
+		Checkpointer.readArray(in, bestWeights);
+		Checkpointer.readArray(in, biases);
+		Checkpointer.readArray(in, bestBiases);
+		curve.clear();
+		for(int r = in.readInt(); r > 0; r--){
+			curve.add(in.readDouble());
+		}
+	}
+
+	private void addVotes(int h, double delta, double biasDelta){
+		if(delta == 0.0 && biasDelta == 0.0){
+			return;
+		}
+		byte[] pred = monitored.getPredictions(h);
+		int offset = monitored.getOffset();
+		for(int ex = 0; ex < votes.length; ex++){
+			int p = pred[offset + ex];
+			votes[ex] += p * delta + p * p * biasDelta;
+		}
+	}
+
+	private double accuracy(){
+		byte[] labels = monitored.getLabels();
+		int offset = monitored.getOffset();
+		int correct = 0;
+		for(int ex = 0; ex < votes.length; ex++){
+			if(votes[ex] * labels[offset + ex] > 0){
+				correct++;
+			}
+		}
+		return votes.length == 0 ? 0.0 : (double) correct / votes.length;
+	}
+
+	/**
+	 * @return The round whose weights were kept.
+	 */
+	public int getBestRound(){
+		return bestRound;
+	}
+
+	/**
+	 * @return The weights of each Hypothesis as of the best round.
+	 */
+	public double[] getBestWeights(){
+		return bestWeights;
+	}
+
+	/**
+	 * @return The biases of each Hypothesis as of the best round.
+	 */
+	public double[] getBestBiases(){
+		return bestBiases;
+	}
+
+	/**
+	 * @return Why boosting stopped.
+	 */
+	public String getReason(){
+		return reason;
+	}
+}
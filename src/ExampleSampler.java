@@ -0,0 +1,21 @@
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Chooses which Examples are looked at when a Booster searches for its next
+ * model. Once boosting has run for a few rounds most of the weight sits on a
+ * small number of Examples, and the rest barely change which model is best.
+ */
+public interface ExampleSampler{
+
+	/**
+	 * Chooses the Examples to search with this round.
+	 *
+	 * @param weights The current weight of each Example.
+	 * @param rows    Filled with the index of each chosen Example, must be as
+	 *                long as weights.
+	 * @param scale   Filled with the factor to scale each chosen Example's
+	 *                contribution by, must be as long as weights.
+	 * @return The number of Examples chosen.
+	 */
+	public int sample(double[] weights, int[] rows, double[] scale);
+}
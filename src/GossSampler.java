@@ -0,0 +1,62 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Gradient-based One-Side Sampling, from Ke et al.'s "LightGBM: A Highly
+ * Efficient Gradient Boosting Decision Tree". The heaviest Examples are always
+ * kept, and a random sample of the rest stands in for all of them, scaled up
+ * so the total weight is unbiased.
+ */
+public class GossSampler implements ExampleSampler{
+
+	// The fraction of Examples, by weight, that are always kept.
+	private double topRate;
+
+	// The fraction of all Examples sampled from the rest.
+	private double otherRate;
+
+	private Random random;
+
+	// Scratch space for finding the cut-off, reused every round.
+	private double[] sorted;
+
+	public GossSampler(double topRate, double otherRate, long seed){
+		this.topRate = topRate;
+		this.otherRate = otherRate;
+		random = new Random(seed);
+	}
+
+	public int sample(double[] weights, int[] rows, double[] scale){
+		if(sorted == null || sorted.length != weights.length){
+			sorted = new double[weights.length];
+		}
+		System.arraycopy(weights, 0, sorted, 0, weights.length);
+		Arrays.sort(sorted);
+		int top = (int) (weights.length * topRate);
+		double cutoff = top == 0 ? Double.POSITIVE_INFINITY
+								 : sorted[sorted.length - top];
+
+		// Each of the rest is kept with the same chance, so that on average
+		// otherRate of all Examples are sampled
+		double keep = topRate < 1.0 ? otherRate / (1.0 - topRate) : 0.0;
+		double boost = (1.0 - topRate) / otherRate;
+		int count = 0;
+		int kept = 0;
+		for(int ex = 0; ex < weights.length; ex++){
+			if(weights[ex] >= cutoff && kept < top){
+				rows[count] = ex;
+				scale[count] = 1.0;
+				count++;
+				kept++;
+			}
+			else if(random.nextDouble() < keep){
+				rows[count] = ex;
+				scale[count] = boost;
+				count++;
+			}
+		}
+		return count;
+	}
+}
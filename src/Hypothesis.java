@@ -5,4 +5,6 @@ public interface Hypothesis{
 	public int prediction(Example ex);
 	public double getWeight();
 	public void setWeight(double weight);
+	public double getBias();
+	public void setBias(double bias);
 }
@@ -1,7 +1,11 @@
 import java.util.HashMap;
+import java.util.regex.Pattern;
 
 /**
  * Author:      Grant Kurtz
+ * <p/>
+ * Rebuilds a Hypothesis from the line Learn wrote for it: its description,
+ * its weight, and for confidence-rated boosters a bias after the weight.
  */
 public class HypothesisFactory{
 	public static Hypothesis createHypothesis(String hString,
@@ -12,12 +16,30 @@ public class HypothesisFactory{
 		if(name.equals("PA")){
 			String symbol = values[1];
 			h = new ParallelMovement(stocks, symbol);
-			h.setWeight(Double.parseDouble(values[2]));
+		}
+		else if(name.equals("CO")){
+			String[] symbols = values[1].split(
+					Pattern.quote(CoMovement.SEPARATOR));
+			h = new CoMovement(stocks, symbols);
 		}
 		else if(name.equals("TO")){
 			h = new TotalMovement(stocks);
-			h.setWeight(Double.parseDouble(values[1]));
+		}
+		if(h != null){
+			int column = weightColumn(values);
+			h.setWeight(Double.parseDouble(values[column]));
+			if(values.length > column + 1){
+				h.setBias(Double.parseDouble(values[column + 1]));
+			}
 		}
 		return h;
 	}
+
+	/**
+	 * @param values A stump line split on commas.
+	 * @return The index of the stump's weight, the bias (if any) follows it.
+	 */
+	public static int weightColumn(String[] values){
+		return values[0].equals("TO") ? 1 : 2;
+	}
 }
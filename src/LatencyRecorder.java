@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Records how long each stage of serving a prediction takes, so that tail
+ * latencies can be checked and compared before and after a change.
+ * <p/>
+ * Each stage keeps a histogram of its latencies in nanoseconds. Values under
+ * 2^SUB_BITS nanoseconds get a bucket each, and every doubling above that is
+ * split into 2^(SUB_BITS - 1) buckets, so a percentile is never off by more
+ * than 1% however long the stage takes, from nanoseconds to hours, in a fixed
+ * number of buckets.
+ * <p/>
+ * Recording is a handful of atomic increments, with no locks, so any number
+ * of threads may record at once, and a report can be written at any time
+ * while they do.
+ */
+public class LatencyRecorder{
+
+	// Values below 2^SUB_BITS are exact, above they are within 2^-(SUB_BITS-1).
+	private static final int SUB_BITS = 8;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int HALF_COUNT = SUB_COUNT / 2;
+
+	// Enough buckets for any positive long.
+	private static final int BUCKETS = (63 - SUB_BITS) * HALF_COUNT
+									   + SUB_COUNT;
+
+	// The percentiles reported for every stage.
+	private static final double[] PERCENTILES = {0.50, 0.99, 0.999};
+	private static final String[] PERCENTILE_NAMES = {"p50", "p99", "p999"};
+
+	private String[] stages;
+	private AtomicLongArray[] buckets;
+	private AtomicLong[] counts;
+	private AtomicLong[] totals;
+	private AtomicLong[] maximums;
+	private AtomicLong requests = new AtomicLong();
+	private long started = System.nanoTime();
+
+	/**
+	 * @param stages The names of the stages to time, recorded by their index.
+	 */
+	public LatencyRecorder(String... stages){
+		this.stages = stages.clone();
+		buckets = new AtomicLongArray[stages.length];
+		counts = new AtomicLong[stages.length];
+		totals = new AtomicLong[stages.length];
+		maximums = new AtomicLong[stages.length];
+		for(int s = 0; s < stages.length; s++){
+			buckets[s] = new AtomicLongArray(BUCKETS);
+			counts[s] = new AtomicLong();
+			totals[s] = new AtomicLong();
+			maximums[s] = new AtomicLong();
+		}
+	}
+
+	/**
+	 * Records one run of a stage.
+	 *
+	 * @param stage The index of the stage, as given to the constructor.
+	 * @param nanos How long it took.
+	 */
+	public void record(int stage, long nanos){
+		if(nanos < 0){
+			nanos = 0;
+		}
+		buckets[stage].incrementAndGet(bucket(nanos));
+		counts[stage].incrementAndGet();
+		totals[stage].addAndGet(nanos);
+		AtomicLong maximum = maximums[stage];
+		long seen = maximum.get();
+		while(nanos > seen && !maximum.compareAndSet(seen, nanos)){
+			seen = maximum.get();
+		}
+	}
+
+	/**
+	 * Records that a whole request was served, for the overall rate.
+	 */
+	public void completed(){
+		requests.incrementAndGet();
+	}
+
+	/**
+	 * @param stage The index of the stage.
+	 * @param q     The fraction of runs, such as 0.99.
+	 * @return The latency in nanoseconds that q of the runs took no longer
+	 *         than (give or take the precision of a bucket), or 0 if the stage
+	 *         never ran.
+	 */
+	public long percentile(int stage, double q){
+		AtomicLongArray histogram = buckets[stage];
+		long count = 0;
+		long[] snapshot = new long[BUCKETS];
+		for(int b = 0; b < BUCKETS; b++){
+			snapshot[b] = histogram.get(b);
+			count += snapshot[b];
+		}
+		if(count == 0){
+			return 0;
+		}
+
+		// The smallest value with at least q of the runs at or below it
+		long rank = Math.max(1, (long) Math.ceil(q * count));
+		long seen = 0;
+		for(int b = 0; b < BUCKETS; b++){
+			seen += snapshot[b];
+			if(seen >= rank){
+				return Math.min(highest(b), maximums[stage].get());
+			}
+		}
+		return maximums[stage].get();
+	}
+
+	/**
+	 * Writes every stage's count, rate, mean, percentiles and maximum, in
+	 * microseconds.
+	 *
+	 * @param output Where to write the report, left open.
+	 * @param json   True for a JSON object, false for lines of text.
+	 */
+	public void write(Writer output, boolean json) throws IOException{
+		double seconds = (System.nanoTime() - started) / 1e9;
+		long served = requests.get();
+		if(json){
+			output.write("{\"seconds\":" + format(seconds)
+						 + ",\"requests\":" + served
+						 + ",\"requestsPerSecond\":"
+						 + format(served / seconds) + ",\"stages\":{");
+		}
+		else{
+			output.write("Requests: " + served + " in " + format(seconds)
+						 + "s (" + format(served / seconds) + "/s)\n");
+			output.write("stage,count,per_second,mean_us");
+			for(String name : PERCENTILE_NAMES){
+				output.write("," + name + "_us");
+			}
+			output.write(",max_us\n");
+		}
+		for(int s = 0; s < stages.length; s++){
+			long count = counts[s].get();
+			double mean = count == 0 ? 0.0
+						  : (double) totals[s].get() / count;
+			if(json){
+				output.write((s > 0 ? "," : "") + "\"" + stages[s]
+							 + "\":{\"count\":" + count
+							 + ",\"perSecond\":" + format(count / seconds)
+							 + ",\"meanMicros\":" + micros(mean));
+				for(int p = 0; p < PERCENTILES.length; p++){
+					output.write(",\"" + PERCENTILE_NAMES[p] + "Micros\":"
+								 + micros(percentile(s, PERCENTILES[p])));
+				}
+				output.write(",\"maxMicros\":" + micros(maximums[s].get())
+							 + "}");
+			}
+			else{
+				output.write(stages[s] + "," + count + ","
+							 + format(count / seconds) + "," + micros(mean));
+				for(double q : PERCENTILES){
+					output.write("," + micros(percentile(s, q)));
+				}
+				output.write("," + micros(maximums[s].get()) + "\n");
+			}
+		}
+		if(json){
+			output.write("}}\n");
+		}
+		output.flush();
+	}
+
+	/**
+	 * @param nanos A latency.
+	 * @return The bucket it is counted in.
+	 */
+	static int bucket(long nanos){
+		if(nanos < SUB_COUNT){
+			return (int) nanos;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(nanos) - (SUB_BITS - 1);
+		return shift * HALF_COUNT + (int) (nanos >>> shift);
+	}
+
+	/**
+	 * @param bucket A bucket.
+	 * @return The largest latency counted in it.
+	 */
+	static long highest(int bucket){
+		if(bucket < SUB_COUNT){
+			return bucket;
+		}
+		int shift = bucket / HALF_COUNT - 1;
+		long sub = bucket % HALF_COUNT + HALF_COUNT;
+		return ((sub + 1) << shift) - 1;
+	}
+
+	private static String micros(double nanos){
+		return format(nanos / 1e3);
+	}
+
+	private static String format(double value){
+		if(Double.isNaN(value) || Double.isInfinite(value)){
+			return "0";
+		}
+		return String.format(Locale.US, "%.3f", value);
+	}
+}
@@ -13,20 +13,30 @@ public class Learn{
 	// The input file used for training our learning models.
 	private static final String INPUT_FILE = "market_data.txt";
 	private static final String INPUT_DIR = "input";
-	private static final String INPUT_PATH = INPUT_DIR + File.separator +
-											 INPUT_FILE;
+	static final String INPUT_PATH = INPUT_DIR + File.separator +
+									 INPUT_FILE;
 
 	// The expected result for the NASDAQ movement on a given day.
 	private static final String NASDAQ_FILE = "nasdaq_data.csv";
 	private static final String NASDAQ_DIR = "input";
-	private static final String NASDAQ_PATH = NASDAQ_DIR + File.separator +
-											  NASDAQ_FILE;
+	static final String NASDAQ_PATH = NASDAQ_DIR + File.separator +
+									  NASDAQ_FILE;
 
 	// The Hypothesis (stumps) and their weights used to build our model.
 	private static final String OUTPUT_DIR = "stump_output";
 	private static final String OUTPUT_FILE = "stumps.txt";
-	private static final String OUTPUT_PATH = OUTPUT_DIR + File.separator +
-											  OUTPUT_FILE;
+	static final String OUTPUT_PATH = OUTPUT_DIR + File.separator +
+									  OUTPUT_FILE;
+
+	// How accuracy changed over the boosting rounds, and where it stopped.
+	private static final String CURVE_FILE = "boost_curve.txt";
+	private static final String CURVE_PATH = OUTPUT_DIR + File.separator +
+											 CURVE_FILE;
+
+	// The state of boosting as of the last checkpoint.
+	private static final String CHECKPOINT_FILE = "checkpoint.bin";
+	private static final String CHECKPOINT_PATH = OUTPUT_DIR + File.separator +
+												  CHECKPOINT_FILE;
 
 	/**
 	 * This nested HashMap was chosen to efficiently aid in Hypothesis answers.
@@ -51,7 +61,53 @@ public class Learn{
 	 */
 	private ArrayList<Example> nasdaq;
 
+	/*
+	 * The trading days of the NASDAQ data, which is kept in date order.
+	 */
+	private TradingCalendar calendar;
+
+	/*
+	 * The positions in the calendar of the days boosted over, followed by
+	 * those held out for validation.
+	 */
+	private int trainingStart;
+	private int validationStart;
+	private int windowEnd;
+
+	private LearnOptions options;
+
+	/*
+	 * A fingerprint of the input files, for caching predictions.
+	 */
+	private String fingerprint;
+
+	/*
+	 * The predictions of the Hypothesis on every day, if they had to be
+	 * evaluated before boosting.
+	 */
+	private PredictionTable evaluated;
+
+	/*
+	 * The index of each Hypothesis kept by pruning, among those there were
+	 * before, or null if nothing was pruned.
+	 */
+	private int[] kept;
+
+	/*
+	 * Records the accuracy of each boosting round and decides when to stop.
+	 */
+	private EarlyStopping monitor;
+
 	public static void main(String[] args){
+		LearnOptions options = null;
+		try{
+			options = LearnOptions.parse(args);
+		}
+		catch(IllegalArgumentException e){
+			System.err.println(e.getMessage());
+			System.err.println(LearnOptions.USAGE);
+			System.exit(1);
+		}
 		System.out.println("Looking for file '" + INPUT_PATH + "'...");
 		System.out.println("Looking for file '" + NASDAQ_PATH + "'...");
 		System.out.println("Looking for file '" + OUTPUT_PATH + "'...");
@@ -64,8 +120,8 @@ public class Learn{
 		// several seconds before they know we can't read/write to a needed
 		// file!
 		try{
-			input = new Scanner(new File(INPUT_PATH));
-			nasdaqInput = new Scanner(new File(NASDAQ_PATH));
+			input = MarketInput.open(INPUT_PATH);
+			nasdaqInput = MarketInput.open(NASDAQ_PATH);
 			output = new BufferedWriter(new FileWriter(OUTPUT_PATH));
 		}
 		catch(FileNotFoundException e){
@@ -79,7 +135,18 @@ public class Learn{
 			System.exit(1);
 		}
 		System.out.println("Found!\nProcessing...");
-		new Learn(input, nasdaqInput, output);
+		try{
+			new Learn(input, nasdaqInput, output, options);
+		}
+		catch(IllegalArgumentException e){
+			System.err.println(e.getMessage() + "! Exiting...");
+			System.exit(1);
+		}
+		catch(IllegalStateException e){
+			// A compressed input file was corrupt, or a worker was lost
+			System.err.println(e.getMessage() + "! Exiting...");
+			System.exit(1);
+		}
 
 		// Just for some easy house keeping
 		input.close();
@@ -87,7 +154,32 @@ public class Learn{
 		System.out.println("Complete!");
 	}
 
-	public Learn(Scanner input, Scanner nasdaqInput, BufferedWriter output){
+	public Learn(Scanner input, Scanner nasdaqInput, BufferedWriter output,
+				 LearnOptions options){
+		this(input, nasdaqInput, options);
+
+		// Pruning needs every Hypothesis evaluated, so it is only done here,
+		// and any workers are told which were kept
+		if(options.prune > 0.0){
+			evaluated = prune(buildTable(hypothesises, nasdaq));
+		}
+
+		// Now, we need to use AdaBoost to improve the accuracy of our
+		// hypothesis
+		boost();
+
+		// Output a series of (weighted) decision stumps
+		outputStumps(output);
+		outputCurve();
+	}
+
+	/**
+	 * Only reads the data and creates the Hypothesis, without boosting or
+	 * pruning. Used by workers, which need the same Hypothesis and Examples as
+	 * Learn.
+	 */
+	public Learn(Scanner input, Scanner nasdaqInput, LearnOptions options){
+		this.options = options;
 		setupFilter();
 
 		// first, process the NASDAQ file, compiling a list of days where it
@@ -100,12 +192,94 @@ public class Learn{
 		// Create our set of Hypothesis
 		createHypothesis();
 
-		// Now, we need to use AdaBoost to improve the accuracy of our
-		// hypothesis
-		boost();
+		// Only train on the window of days asked for. If a validation slice
+		// was asked for too, the most recent days of the window are held
+		// out of training
+		TradingCalendar.sort(nasdaq);
+		calendar = new TradingCalendar(nasdaq);
+		int[] window = calendar.window(options.from, options.to);
+		trainingStart = window[0];
+		windowEnd = window[1];
+		validationStart = windowEnd
+						  - (int) ((windowEnd - trainingStart)
+								   * options.validation);
+		if(validationStart == trainingStart){
+			throw new IllegalArgumentException("No days to train on in the "
+											   + "window asked for");
+		}
 
-		// Output a series of (weighted) decision stumps
-		outputStumps(output);
+		// Done here rather than in boost() so that workers have the same
+		// Hypothesis that Learn does
+		if(options.coMovement > 0.0){
+			addCoMovements();
+		}
+	}
+
+	/**
+	 * Adds a CoMovement Hypothesis for every group of 2 or 3 stocks that all
+	 * moved the same way on enough training days to be worth boosting over.
+	 * A group of 3 can't have moved together more often than any 2 of them,
+	 * so only groups extending a pair that did are counted.
+	 */
+	private void addCoMovements(){
+		ArrayList<String> symbols = new ArrayList<String>(filter);
+		Collections.sort(symbols);
+		MovementBitsets bitsets = new MovementBitsets(stocks, nasdaq, symbols);
+		int support = (int) Math.ceil(options.coMovement
+									  * (validationStart - trainingStart));
+		int added = 0;
+		for(int i = 0; i < symbols.size(); i++){
+			for(int j = i + 1; j < symbols.size(); j++){
+				String[] pair = {symbols.get(i), symbols.get(j)};
+				if(bitsets.support(pair, trainingStart, validationStart)
+				   < support){
+					continue;
+				}
+				hypothesises.add(new CoMovement(stocks, pair, bitsets));
+				added++;
+				for(int k = j + 1; k < symbols.size(); k++){
+					String[] triple = {pair[0], pair[1], symbols.get(k)};
+					if(bitsets.support(triple, trainingStart, validationStart)
+					   >= support){
+						hypothesises.add(new CoMovement(stocks, triple,
+														bitsets));
+						added++;
+					}
+				}
+			}
+		}
+		System.out.println("Added " + added + " co-movement Hypothesis");
+	}
+
+	/**
+	 * Drops every Hypothesis whose predictions on the training days are a near
+	 * copy of an earlier Hypothesis, see CandidatePruner.
+	 *
+	 * @param all The predictions of every Hypothesis on every day.
+	 * @return The predictions of just the Hypothesis kept.
+	 */
+	public PredictionTable prune(PredictionTable all){
+		int before = hypothesises.size();
+		keep(new CandidatePruner(options.prune, options.seed)
+					 .prune(getTraining(all)));
+		System.out.println("Pruned " + before + " Hypothesis to "
+						   + hypothesises.size());
+		return all.select(kept);
+	}
+
+	/**
+	 * Drops every Hypothesis but those given, such as those another process
+	 * kept when pruning.
+	 *
+	 * @param kept The index of each Hypothesis to keep, in ascending order.
+	 */
+	public void keep(int[] kept){
+		ArrayList<Hypothesis> representatives = new ArrayList<Hypothesis>();
+		for(int h : kept){
+			representatives.add(hypothesises.get(h));
+		}
+		hypothesises = representatives;
+		this.kept = kept;
 	}
 
 	/**
@@ -127,87 +301,253 @@ public class Learn{
 	}
 
 	/**
-	 * The implementation of AdaBoost, as specified during lecture and in the book,
-	 * "Artificial Intelligence: A Modern Approach", Third Edition, Section 18.10,
-	 * figure 18.34 (page 751). The only liberty taken was to ignore results from
-	 * Hypothesis if a zero was returned.  This is done because the Hypothesis
-	 * probably didn't have data for that day, and so to avoid skewing the model in
-	 * any particular direction error is not accumulated or applied for those
-	 * days.
+	 * Runs the chosen Booster over the precomputed predictions of every
+	 * Hypothesis, then gives each Hypothesis the weight it was boosted to.
+	 * <p/>
+	 * The predictions are evaluated for every day once, and the training and
+	 * validation days are windows of them.
+	 * <p/>
+	 * If there is a validation slice, boosting stops once accuracy on it stops
+	 * improving. Boosting always stops early if no model can improve the vote
+	 * any further.
+	 * <p/>
+	 * If workers were given, the predictions are held by the workers instead,
+	 * and only the labels are kept here.
+	 * <p/>
+	 * If asked to, the state of boosting is checkpointed every so many rounds,
+	 * and a later run can resume from the last checkpoint.
 	 */
 	private void boost(){
+		List<Example> training = nasdaq.subList(trainingStart,
+												validationStart);
+		List<Example> validation = nasdaq.subList(validationStart, windowEnd);
+		System.out.println("Training on " + training.size() + " days from "
+						   + training.get(0).date + ", validating on "
+						   + validation.size() + " days");
+		Candidates table;
+		Candidates held;
+		WorkerPool pool = null;
+		if(options.workers != null){
+			try{
+				pool = new WorkerPool(options.workers, options.args, kept,
+									  hypothesises.size(), training.size(),
+									  validation.size());
+			}
+			catch(IOException e){
+				System.err.println("Unable to start workers! " + e.getMessage()
+								   + " Exiting...");
+				System.exit(1);
+			}
 
-		// Initially, all hypothesis are equally likely, so each hypothesis gets
-		// an equal weight.
-		double[] exampleWeights = new double[nasdaq.size()];
-		Arrays.fill(exampleWeights, (1.0 / nasdaq.size()));
-
-		// After testing several values for iterations, below ~47 and above ~48
-		// the accuracy on the training data would taper off.  In the extreme,
-		// several weights would approach Infinity, suggesting that AdaBoost
-		// was starting to overfit some models.
-		for(int iterations = 0; iterations < 47; iterations++){
-			double error = 0.0;
-			int model = getBestModel(exampleWeights);
-			for(int ex = 0; ex < nasdaq.size(); ex++){
-				int prediction = hypothesises.get(model).prediction(
-						nasdaq.get(ex));
-				int movement = nasdaq.get(ex).close > nasdaq.get(ex).open ?
-							   1 : -1;
-				if(prediction != 0 && prediction != movement){
-					error += exampleWeights[ex];
-				}
+			// The workers hold the predictions from here on
+			evaluated = null;
+			table = new RemoteCandidates(pool, WorkerPool.TRAINING,
+										 PredictionTable.labels(training),
+										 hypothesises.size());
+			held = new RemoteCandidates(pool, WorkerPool.VALIDATION,
+										PredictionTable.labels(validation),
+										hypothesises.size());
+		}
+		else{
+			PredictionTable all = evaluated != null ? evaluated
+								  : buildTable(hypothesises, nasdaq);
+			table = getTraining(all);
+			held = getValidation(all);
+		}
+
+		// A lost worker must not leave the others waiting on their sockets
+		try{
+			boost(table, held, training, validation);
+		}
+		finally{
+			if(pool != null){
+				pool.close();
 			}
+		}
+	}
+
+	/**
+	 * Boosts over the training Candidates, monitoring the held out ones.
+	 *
+	 * @param table      The Candidates to boost over.
+	 * @param held       The Candidates to measure accuracy on.
+	 * @param training   The days boosted over.
+	 * @param validation The days held out, possibly none.
+	 */
+	private void boost(Candidates table, Candidates held,
+					   List<Example> training, List<Example> validation){
+		if(validation.size() > 0){
+			monitor = new EarlyStopping(held, options.patience);
+		}
+		else{
+			monitor = new EarlyStopping(table, 0);
+		}
+
+		double[] weights = new double[hypothesises.size()];
+		for(int h = 0; h < weights.length; h++){
+			weights[h] = hypothesises.get(h).getWeight();
+		}
 
-			// Computing the error was done with this method as it produced
-			// reliable results, whereas the method the book gives never
-			// produced useful values.
-			hypothesises.get(model).setWeight(Math.log((1.0 - error) / error));
-			for(int ex = 0; ex < nasdaq.size(); ex++){
-				int prediction = hypothesises.get(model).prediction(
-						nasdaq.get(ex));
-				int movement = nasdaq.get(ex).close > nasdaq.get(ex).open ?
-							   1 : -1;
-				if(prediction != 0 && prediction == movement){
-					double sum = getSumOfWeights()
-								 / hypothesises.get(model).getWeight();
-					exampleWeights[ex] = exampleWeights[ex] * Math.exp(
-							-sum * prediction * movement);
+		Booster booster = options.createBooster();
+		booster.init(table, weights, null);
+		monitor.start(booster.getHypothesisWeights(),
+					  booster.getHypothesisBiases());
+		Checkpointer checkpointer = null;
+		int start = 0;
+		if(options.checkpoint > 0 || options.resume){
+			checkpointer = new Checkpointer(new File(CHECKPOINT_PATH),
+					Checkpointer.fingerprint(fingerprintInput(), options,
+											 hypothesises, training,
+											 validation));
+		}
+		if(options.resume){
+			try{
+				start = checkpointer.restore(booster, monitor);
+				System.out.println("Resuming after round " + start);
+			}
+			catch(FileNotFoundException e){
+				System.out.println("No checkpoint found, starting over");
+			}
+			catch(IOException e){
+				System.err.println("Unable to resume from '" + CHECKPOINT_PATH
+								   + "'! " + e.getMessage() + " Exiting...");
+				System.exit(1);
+			}
+		}
+		try{
+			for(int iterations = start; iterations < options.rounds;
+				iterations++){
+				int model = booster.round();
+				if(model < 0){
+					monitor.degenerate();
+					break;
+				}
+				if(monitor.update(model, booster.getHypothesisWeights(),
+							   booster.getHypothesisBiases())){
+					break;
+				}
+				if(options.checkpoint > 0
+				   && (iterations + 1) % options.checkpoint == 0){
+					checkpointer.save(iterations + 1, booster, monitor);
 				}
 			}
-
-			// Normalize our results for simplicity
-			normalize(exampleWeights);
+		}
+		finally{
+			if(checkpointer != null){
+				checkpointer.close();
+			}
+		}
+		System.out.println("Boosting stopped after round "
+						   + monitor.getBestRound() + " ("
+						   + monitor.getReason() + ")");
+
+		weights = monitor.getBestWeights();
+		double[] biases = monitor.getBestBiases();
+		for(int h = 0; h < weights.length; h++){
+			hypothesises.get(h).setWeight(weights[h]);
+			hypothesises.get(h).setBias(biases[h]);
 		}
 	}
 
 	/**
-	 * Nothing special, just a standard normalize function.  Normalization is made
-	 * for 1.0.
+	 * Evaluates the Hypothesis, reusing any predictions cached by an earlier
+	 * run on the same input files.
 	 *
-	 * @param exampleWeights The array of weights to normalize across.
+	 * @param hypothesis The Hypothesis to evaluate.
+	 * @param examples   The NASDAQ days to evaluate them on.
+	 * @return The evaluated predictions.
 	 */
-	private void normalize(final double[] exampleWeights){
-		double total = 0.0;
-		for(double d : exampleWeights){
-			total += d;
+	public PredictionTable buildTable(ArrayList<Hypothesis> hypothesis,
+									  ArrayList<Example> examples){
+		if(options.cache == null || examples.isEmpty()){
+			return PredictionTable.build(hypothesis, examples);
 		}
-		for(int w = 0; w < exampleWeights.length; w++){
-			exampleWeights[w] = exampleWeights[w] / total;
+		if(fingerprintInput() == null){
+			System.err.println("Unable to fingerprint input files, not "
+							   + "caching predictions!");
+			options.cache = null;
+			return PredictionTable.build(hypothesis, examples);
 		}
+		return PredictionTable.build(hypothesis, examples, new PredictionCache(
+				new File(options.cache), fingerprint, examples));
+	}
+
+	/**
+	 * @return A fingerprint of the input files, or null if they couldn't be
+	 *         read.
+	 */
+	private String fingerprintInput(){
+		if(fingerprint == null){
+			try{
+				fingerprint = PredictionCache.fingerprint(INPUT_PATH,
+														  NASDAQ_PATH);
+			}
+			catch(IOException e){
+				return null;
+			}
+		}
+		return fingerprint;
+	}
+
+	public ArrayList<Hypothesis> getHypothesis(){
+		return hypothesises;
+	}
+
+	public ArrayList<Example> getExamples(){
+		return nasdaq;
+	}
+
+	/**
+	 * @param all The predictions for every day, from getExamples().
+	 * @return A view of just the days boosted over.
+	 */
+	public PredictionTable getTraining(PredictionTable all){
+		return all.window(trainingStart, validationStart);
+	}
+
+	/**
+	 * @param all The predictions for every day, from getExamples().
+	 * @return A view of just the days held out for validation.
+	 */
+	public PredictionTable getValidation(PredictionTable all){
+		return all.window(validationStart, windowEnd);
+	}
+
+	/**
+	 * @param all The predictions for every day, from getExamples().
+	 * @return A view of the days trained and validated on together.
+	 */
+	public PredictionTable getWindow(PredictionTable all){
+		return all.window(trainingStart, windowEnd);
+	}
+
+	/**
+	 * @return The options Learn was run with.
+	 */
+	public LearnOptions getOptions(){
+		return options;
 	}
 
 	/**
 	 * Outputs a "stringified" version of the Hypothesis.  This was chosen over
 	 * serialization for its simplicity. In particular, stringifying is easier for
 	 * the TestTraining program where the Hypothesis isn't rebuilt.
+	 * <p/>
+	 * Stumps from the confidence-rated boosters follow their weight with a
+	 * bias, so that they vote weight + bias when predicting "Up" and
+	 * bias - weight when predicting "Down". Stumps without a bias are written
+	 * as they always were.
 	 *
 	 * @param output The file handler to output the results to.
 	 */
 	private void outputStumps(BufferedWriter output){
 		try{
 			for(Hypothesis h : hypothesises){
-				output.write(h + "," + h.getWeight() + "\n");
+				output.write(h + "," + h.getWeight());
+				if(h.getBias() != 0.0){
+					output.write("," + h.getBias());
+				}
+				output.write("\n");
 			}
 		}
 		catch(IOException e){
@@ -228,6 +568,35 @@ public class Learn{
 		}
 	}
 
+	/**
+	 * Outputs the accuracy of each boosting round, and the round the stumps
+	 * were taken from, next to the stumps themselves.
+	 */
+	private void outputCurve(){
+		BufferedWriter output = null;
+		try{
+			output = new BufferedWriter(new FileWriter(CURVE_PATH));
+			monitor.write(output);
+		}
+		catch(IOException e){
+			System.err.println("Unable to write boosting curve to file '"
+							   + CURVE_PATH + "'! Exiting...");
+			System.exit(1);
+		}
+		finally{
+			try{
+				if(output != null){
+					output.close();
+				}
+			}
+			catch(IOException e){
+				System.err.println("Unable to close file handle for '"
+								   + CURVE_PATH + "'! Exiting...");
+				System.exit(1);
+			}
+		}
+	}
+
 	/**
 	 * Dumps all the Dow Jones Industrial Average data for later use in producing
 	 * predictions for Hypothesis.
@@ -368,31 +737,4 @@ public class Learn{
 		filter.add("WMT");
 		filter.add("DIS");
 	}
-
-	public int getBestModel(double[] exampleWeights){
-		int bestModel = 0;
-		double bestWeight = Double.NEGATIVE_INFINITY;
-		for(int h = 0; h < hypothesises.size(); h++){
-			double adjWeight = 0.0;
-			for(int ex = 0; ex < nasdaq.size(); ex++){
-				int movement =
-						nasdaq.get(ex).close > nasdaq.get(ex).open ? 1 : -1;
-				int pred = hypothesises.get(h).prediction(nasdaq.get(ex));
-				adjWeight += movement * pred * exampleWeights[ex];
-			}
-			if(adjWeight > bestWeight){
-				bestModel = h;
-				bestWeight = adjWeight;
-			}
-		}
-		return bestModel;
-	}
-
-	public double getSumOfWeights(){
-		double sumOfWeights = 0.0;
-		for(Hypothesis h : hypothesises){
-			sumOfWeights += h.getWeight();
-		}
-		return sumOfWeights;
-	}
 }
@@ -0,0 +1,254 @@
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * The command line options understood by Learn. Every option has a default
+ * that reproduces the original behavior of Learn, so running it without
+ * arguments is unchanged.
+ */
+public class LearnOptions{
+
+	public static final String USAGE =
+			"Usage: java Learn [-booster adaboost|real|logit] [-accumulate]\n"
+			+ "                  [-stopdegenerate]\n"
+			+ "                  [-rounds N] [-validation FRACTION]\n"
+			+ "                  [-patience N] [-trim TAIL]\n"
+			+ "                  [-goss TOP,OTHER] [-seed N]\n"
+			+ "                  [-comovement SUPPORT] [-prune SIMILARITY]\n"
+			+ "                  [-workers HOST:PORT,HOST:PORT...]\n"
+			+ "                  [-cache DIR] [-nocache]\n"
+			+ "                  [-checkpoint ROUNDS] [-resume]\n"
+			+ "                  [-from YYYY-MM-DD] [-to YYYY-MM-DD]";
+
+	// Which Booster to train with.
+	public String booster = "adaboost";
+
+	// Whether AdaBoost adds to the weight of a re-chosen model.
+	public boolean accumulate = false;
+
+	// Whether AdaBoost stops at a model with an error of 0 or at least 0.5,
+	// rather than weighting it like any other.
+	public boolean stopDegenerate = false;
+
+	/*
+	 * After testing several values for iterations, below ~47 and above ~48
+	 * the accuracy on the training data would taper off.  In the extreme,
+	 * several weights would approach Infinity, suggesting that AdaBoost
+	 * was starting to overfit some models.
+	 */
+	public int rounds = 47;
+
+	// The fraction of the most recent NASDAQ days held out for validation.
+	public double validation = 0.0;
+
+	// Rounds without improvement on the validation days before stopping.
+	public int patience = 10;
+
+	// When trimming, the most weight the skipped Examples may hold.
+	public double trim = 0.0;
+
+	// When using GOSS, the fraction of heavy Examples always kept and the
+	// fraction of all Examples sampled from the rest.
+	public double gossTop = 0.0;
+	public double gossOther = 0.0;
+
+	// Groups of 2 and 3 stocks become Hypothesis if they all moved the same
+	// way on at least this fraction of training days, or 0 for none.
+	public double coMovement = 0.0;
+
+	// Hypothesis agreeing with an earlier one on at least this fraction of
+	// training days are dropped before boosting, or 0 to keep them all.
+	public double prune = 0.0;
+
+	// Seeds any random sampling, so runs can be repeated.
+	public long seed = 1;
+
+	// Where LearnWorkers are listening, or null to train in this process.
+	public String[] workers = null;
+
+	// The first and last days to train on, or null for the whole history.
+	public String from = null;
+	public String to = null;
+
+	// Where predictions are cached between runs, or null to not cache them.
+	public String cache = null;
+
+	// Rounds between checkpoints of the boosting state, or 0 for none.
+	public int checkpoint = 0;
+
+	// Whether to carry on from the last checkpoint.
+	public boolean resume = false;
+
+	// The arguments these options were parsed from, passed on to workers.
+	public String[] args = new String[0];
+
+	/**
+	 * @param args The command line arguments given to Learn.
+	 * @return The parsed options.
+	 * @throws IllegalArgumentException If an option is unknown or has a bad
+	 *                                  value.
+	 */
+	public static LearnOptions parse(String[] args){
+		LearnOptions options = new LearnOptions();
+		options.args = args.clone();
+		for(int i = 0; i < args.length; i++){
+			String arg = args[i];
+			if(arg.equals("-accumulate")){
+				options.accumulate = true;
+				continue;
+			}
+			if(arg.equals("-stopdegenerate")){
+				options.stopDegenerate = true;
+				continue;
+			}
+			if(arg.equals("-nocache")){
+				options.cache = null;
+				continue;
+			}
+			if(arg.equals("-resume")){
+				options.resume = true;
+				continue;
+			}
+			if(i + 1 == args.length){
+				throw new IllegalArgumentException("Missing value for " + arg);
+			}
+			String value = args[++i];
+			try{
+				if(arg.equals("-booster")){
+					options.booster = value;
+					options.createBooster();
+				}
+				else if(arg.equals("-rounds")){
+					options.rounds = Integer.parseInt(value);
+					if(options.rounds < 0){
+						throw new IllegalArgumentException(
+								"Rounds can't be negative: " + value);
+					}
+				}
+				else if(arg.equals("-validation")){
+					options.validation = Double.parseDouble(value);
+					if(options.validation < 0.0 || options.validation >= 1.0){
+						throw new IllegalArgumentException(
+								"Validation must be in [0, 1): " + value);
+					}
+				}
+				else if(arg.equals("-patience")){
+					options.patience = Integer.parseInt(value);
+					if(options.patience < 1){
+						throw new IllegalArgumentException(
+								"Patience must be at least 1: " + value);
+					}
+				}
+				else if(arg.equals("-trim")){
+					options.trim = Double.parseDouble(value);
+					if(options.trim < 0.0 || options.trim >= 1.0){
+						throw new IllegalArgumentException(
+								"Trim must be in [0, 1): " + value);
+					}
+				}
+				else if(arg.equals("-goss")){
+					String[] rates = value.split(",");
+					if(rates.length != 2){
+						throw new IllegalArgumentException(
+								"Expected -goss TOP,OTHER: " + value);
+					}
+					options.gossTop = Double.parseDouble(rates[0]);
+					options.gossOther = Double.parseDouble(rates[1]);
+					if(options.gossTop < 0.0 || options.gossOther <= 0.0
+					   || options.gossTop + options.gossOther > 1.0){
+						throw new IllegalArgumentException(
+								"Bad GOSS rates: " + value);
+					}
+				}
+				else if(arg.equals("-comovement")){
+					options.coMovement = Double.parseDouble(value);
+					if(options.coMovement <= 0.0 || options.coMovement > 1.0){
+						throw new IllegalArgumentException(
+								"Co-movement support must be in (0, 1]: "
+								+ value);
+					}
+				}
+				else if(arg.equals("-prune")){
+					options.prune = Double.parseDouble(value);
+					if(options.prune <= 0.0 || options.prune > 1.0){
+						throw new IllegalArgumentException(
+								"Prune similarity must be in (0, 1]: "
+								+ value);
+					}
+				}
+				else if(arg.equals("-seed")){
+					options.seed = Long.parseLong(value);
+				}
+				else if(arg.equals("-workers")){
+					options.workers = value.split(",");
+				}
+				else if(arg.equals("-cache")){
+					options.cache = value;
+				}
+				else if(arg.equals("-checkpoint")){
+					options.checkpoint = Integer.parseInt(value);
+					if(options.checkpoint < 0){
+						throw new IllegalArgumentException(
+								"Checkpoint rounds can't be negative: "
+								+ value);
+					}
+				}
+				else if(arg.equals("-from")){
+					TradingCalendar.parse(value);
+					options.from = value;
+				}
+				else if(arg.equals("-to")){
+					TradingCalendar.parse(value);
+					options.to = value;
+				}
+				else{
+					throw new IllegalArgumentException("Unknown option " + arg);
+				}
+			}
+			catch(NumberFormatException nfe){
+				throw new IllegalArgumentException("Bad value for " + arg
+												   + ": " + value);
+			}
+		}
+		// Only one sampler can choose the Examples searched each round
+		if(options.trim > 0.0 && options.gossOther > 0.0){
+			throw new IllegalArgumentException("-trim and -goss can't be "
+											   + "used together");
+		}
+		return options;
+	}
+
+	/**
+	 * @return A new instance of the chosen Booster.
+	 * @throws IllegalArgumentException If the Booster is unknown.
+	 */
+	public Booster createBooster(){
+		AbstractBooster created;
+		if(booster.equals("adaboost")){
+			created = new AdaBoost(accumulate, stopDegenerate);
+		}
+		else if(booster.equals("real")){
+			created = new RealAdaBoost();
+		}
+		else if(booster.equals("logit")){
+			created = new LogitBoost();
+		}
+		else{
+			throw new IllegalArgumentException("Unknown booster " + booster);
+		}
+		created.setSampler(createSampler());
+		return created;
+	}
+
+	/**
+	 * @return The sampler asked for, or null to search every Example.
+	 */
+	public ExampleSampler createSampler(){
+		if(gossOther > 0.0){
+			return new GossSampler(gossTop, gossOther, seed);
+		}
+		else if(trim > 0.0){
+			return new WeightTrimming(trim);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,165 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Scanner;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * A worker for distributed training. The worker waits for Learn to connect,
+ * loads the same data Learn did, keeps the Hypothesis Learn kept after
+ * pruning, and then evaluates only its own shard of them. Each round it is
+ * sent the Example weights and replies with the best of its Hypothesis, see
+ * WorkerPool for the other side of this.
+ * <p/>
+ * Anyone who can connect to a worker can send it work, so by default it only
+ * listens on the loopback address. Workers on other machines must be given
+ * the address to listen on with -bind, on a network that is trusted.
+ */
+public class LearnWorker{
+
+	// Where a worker listens unless told otherwise.
+	private static final String DEFAULT_BIND = "127.0.0.1";
+
+	public static void main(String[] args){
+		String bind = DEFAULT_BIND;
+		String port = null;
+		if(args.length == 3 && args[0].equals("-bind")){
+			bind = args[1];
+			port = args[2];
+		}
+		else if(args.length == 1){
+			port = args[0];
+		}
+		else{
+			System.err.println("Usage: java LearnWorker [-bind ADDRESS] port");
+			System.exit(1);
+		}
+
+		ServerSocket server = null;
+		Socket socket = null;
+		try{
+			server = new ServerSocket(Integer.parseInt(port), 1,
+									  InetAddress.getByName(bind));
+			System.out.println("Waiting for Learn on " + bind + ":" + port
+							   + "...");
+			socket = server.accept();
+			server.close();
+			new LearnWorker(new DataInputStream(new BufferedInputStream(
+					socket.getInputStream())),
+							new DataOutputStream(new BufferedOutputStream(
+									socket.getOutputStream())));
+			socket.close();
+		}
+		catch(NumberFormatException e){
+			System.err.println("Bad port '" + port + "'! Exiting...");
+			System.exit(1);
+		}
+		catch(UnknownHostException e){
+			System.err.println("Unknown address '" + bind + "'! Exiting...");
+			System.exit(1);
+		}
+		catch(IOException e){
+			System.err.println("Lost contact with Learn! Exiting...");
+			System.exit(1);
+		}
+		System.out.println("Complete!");
+	}
+
+	public LearnWorker(DataInputStream in, DataOutputStream out)
+			throws IOException{
+		int shard = in.readInt();
+		int shards = in.readInt();
+		String[] args = new String[in.readInt()];
+		for(int i = 0; i < args.length; i++){
+			args[i] = in.readUTF();
+		}
+		int survivors = in.readInt();
+		int[] kept = survivors < 0 ? null : new int[survivors];
+		for(int i = 0; i < survivors; i++){
+			kept[i] = in.readInt();
+		}
+		System.out.println("Loading shard " + shard + " of " + shards + "...");
+
+		LearnOptions options = LearnOptions.parse(args);
+		Scanner input = MarketInput.open(Learn.INPUT_PATH);
+		Scanner nasdaqInput = MarketInput.open(Learn.NASDAQ_PATH);
+		Learn data = new Learn(input, nasdaqInput, options);
+		input.close();
+		nasdaqInput.close();
+		if(kept != null){
+			data.keep(kept);
+		}
+
+		// Hypothesis are dealt out to workers like cards
+		ArrayList<Hypothesis> all = data.getHypothesis();
+		ArrayList<Hypothesis> owned = new ArrayList<Hypothesis>();
+		for(int h = shard; h < all.size(); h += shards){
+			owned.add(all.get(h));
+		}
+		PredictionTable predictions =
+				data.buildTable(owned, data.getExamples());
+		PredictionTable training = data.getTraining(predictions);
+		PredictionTable validation = data.getValidation(predictions);
+		Booster booster = options.createBooster();
+		out.writeInt(all.size());
+		out.writeInt(training.getExampleCount());
+		out.writeInt(validation.getExampleCount());
+		out.flush();
+		System.out.println("Serving " + owned.size() + " Hypothesis...");
+
+		int examples = training.getExampleCount();
+		double[] a = new double[examples];
+		double[] b = new double[examples];
+		int[] rows = new int[examples];
+		double[] sums = new double[4];
+		int command;
+		while((command = in.readInt()) != WorkerPool.DONE){
+			if(command == WorkerPool.BEST){
+				double total = in.readDouble();
+				int count = in.readInt();
+				boolean hasB = in.readBoolean();
+				int length = count < 0 ? examples : count;
+				for(int i = 0; i < count; i++){
+					rows[i] = in.readInt();
+				}
+				for(int i = 0; i < length; i++){
+					a[i] = in.readDouble();
+				}
+				if(hasB){
+					for(int i = 0; i < length; i++){
+						b[i] = in.readDouble();
+					}
+				}
+				int model = -1;
+				double score = Double.NEGATIVE_INFINITY;
+				if(owned.size() > 0){
+					model = training.best(booster, a, hasB ? b : null,
+										  count < 0 ? null : rows, count,
+										  total, sums);
+					score = booster.score(sums, total);
+					model = shard + model * shards;
+				}
+				out.writeInt(model);
+				out.writeDouble(score);
+				for(double s : sums){
+					out.writeDouble(s);
+				}
+			}
+			else if(command == WorkerPool.PREDICTIONS){
+				PredictionTable table = in.readInt() == WorkerPool.TRAINING
+										? training : validation;
+				byte[] pred = table.getPredictions(in.readInt() / shards);
+				out.writeInt(table.getExampleCount());
+				out.write(pred, table.getOffset(), table.getExampleCount());
+			}
+			else{
+				throw new IOException("Unknown command " + command);
+			}
+			out.flush();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Two-class LogitBoost, from Friedman, Hastie and Tibshirani's "Additive
+ * Logistic Regression: A Statistical View of Boosting". Each round fits a
+ * stump to the working response by weighted least squares, where a stump
+ * fits one value for the days it predicts "Up" and one for the days it
+ * predicts "Down", and abstains on days it has no data for.
+ * <p/>
+ * The two fitted values are kept as a weight, half their difference, and a
+ * bias, half their sum, so a stump votes exactly the value it fitted.
+ */
+public class LogitBoost extends AbstractBooster{
+
+	// Working responses are clamped to keep them finite as p approaches 0 or 1.
+	private static final double MAX_RESPONSE = 4.0;
+
+	// Keeps the weight of confidently predicted days from reaching 0.
+	private static final double MIN_WEIGHT = 1e-10;
+
+	/*
+	 * The additive model F(x) evaluated at each Example, P(up) is
+	 * 1 / (1 + e^(-2F)).
+	 */
+	private double[] model;
+
+	/*
+	 * The accumulated fitted values of each Hypothesis.
+	 */
+	private double[] upFit;
+	private double[] downFit;
+
+	/*
+	 * How much each Example counts for, scaled to average 1, or null if they
+	 * all count the same.
+	 */
+	private double[] prior;
+
+	public void init(Candidates table, double[] weights, double[] examples){
+		super.init(table, new double[weights.length], examples);
+		prior = null;
+		if(examples != null){
+			prior = exampleWeights.clone();
+			for(int ex = 0; ex < prior.length; ex++){
+				prior[ex] *= prior.length;
+			}
+		}
+		model = new double[exampleWeights.length];
+		upFit = new double[weights.length];
+		downFit = new double[weights.length];
+		hypothesisBiases = new double[weights.length];
+		b = new double[exampleWeights.length];
+	}
+
+	public int round(){
+
+		// a holds the weights, b the weighted working responses
+		for(int ex = 0; ex < model.length; ex++){
+			double p = 1.0 / (1.0 + Math.exp(-2 * model[ex]));
+			double w = Math.max(p * (1.0 - p), MIN_WEIGHT);
+			double z = ((labels[offset + ex] > 0 ? 1.0 : 0.0) - p) / w;
+			z = Math.max(-MAX_RESPONSE, Math.min(MAX_RESPONSE, z));
+			if(prior != null){
+				w *= prior[ex];
+			}
+			exampleWeights[ex] = w;
+			a[ex] = w;
+			b[ex] = w * z;
+		}
+		int h = select(true);
+		if(score(chosen, selectedWeight) <= 0.0){
+			return -1;
+		}
+
+		double up = fit(chosen[1] + chosen[0], chosen[3] + chosen[2]);
+		double down = fit(chosen[1] - chosen[0], chosen[3] - chosen[2]);
+		upFit[h] += 0.5 * up;
+		downFit[h] += 0.5 * down;
+		hypothesisWeights[h] = (upFit[h] - downFit[h]) / 2;
+		hypothesisBiases[h] = (upFit[h] + downFit[h]) / 2;
+
+		byte[] pred = table.getPredictions(h);
+		for(int ex = 0; ex < exampleWeights.length; ex++){
+			if(pred[offset + ex] > 0){
+				model[ex] += 0.5 * up;
+			}
+			else if(pred[offset + ex] < 0){
+				model[ex] += 0.5 * down;
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Models are rated by how much they reduce the weighted squared error of
+	 * the fit, which for each bin is (sum of w * z)^2 / (sum of w).
+	 */
+	public double score(double[] sums, double total){
+		double up = sums[1] + sums[0];
+		double down = sums[1] - sums[0];
+		double upResponse = sums[3] + sums[2];
+		double downResponse = sums[3] - sums[2];
+		double reduction = 0.0;
+		if(up > 0){
+			reduction += upResponse * upResponse / up;
+		}
+		if(down > 0){
+			reduction += downResponse * downResponse / down;
+		}
+
+		// Both of the above were doubled by the sums, which doesn't change
+		// the ordering of models
+		return reduction;
+	}
+
+	public void writeState(DataOutput out) throws IOException{
+		super.writeState(out);
+		Checkpointer.writeArray(out, model);
+		Checkpointer.writeArray(out, upFit);
+		Checkpointer.writeArray(out, downFit);
+	}
+
+	public void readState(DataInput in) throws IOException{
+		super.readState(in);
+		Checkpointer.readArray(in, model);
+		Checkpointer.readArray(in, upFit);
+		Checkpointer.readArray(in, downFit);
+		for(int h = 0; h < hypothesisBiases.length; h++){
+			hypothesisBiases[h] = (upFit[h] + downFit[h]) / 2;
+		}
+	}
+
+	/**
+	 * @param weight   Twice the sum of weights in a bin.
+	 * @param response Twice the sum of weighted responses in a bin.
+	 * @return The weighted mean response of the bin, or 0 for an empty bin.
+	 */
+	private static double fit(double weight, double response){
+		return weight > 0 ? response / weight : 0.0;
+	}
+}
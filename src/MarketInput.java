@@ -0,0 +1,189 @@
+import java.io.*;
+import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Opens input files for reading, whether or not they are gzip-compressed, so
+ * the files vendors send can be read without decompressing them to disk
+ * first.
+ * <p/>
+ * A path ending in ".gz" is read as gzip, and a path that doesn't exist is
+ * looked for with ".gz" added, so "input/market_data.txt" finds
+ * "input/market_data.txt.gz" if that is all there is.
+ * <p/>
+ * A compressed file is decompressed on a thread of its own, which hands
+ * chunks of text to the Scanner through a bounded queue. Parsing one chunk
+ * then overlaps with decompressing the next, and opening several compressed
+ * files at once decompresses them in parallel. A file that turns out to be
+ * corrupt is fatal, rather than quietly training on part of it: the failure
+ * is passed through the queue and thrown from the Scanner call reading at
+ * the time. Scanner treats an IOException from what it reads as the end of
+ * the input, so it is thrown as an IllegalStateException instead.
+ */
+public class MarketInput{
+
+	// The number of characters handed to the Scanner at a time.
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	// How many chunks decompression may get ahead of parsing.
+	private static final int CHUNKS_AHEAD = 16;
+
+	private static final String GZIP_SUFFIX = ".gz";
+
+	/**
+	 * @param path The file asked for.
+	 * @return The file to read for it: the path itself if it exists, or else
+	 *         its compressed version if that exists, or else the path itself.
+	 */
+	public static String resolve(String path){
+		if(!new File(path).exists()
+		   && new File(path + GZIP_SUFFIX).exists()){
+			return path + GZIP_SUFFIX;
+		}
+		return path;
+	}
+
+	/**
+	 * @param path The file to read, see resolve().
+	 * @return A Scanner over the (decompressed) file.
+	 * @throws FileNotFoundException If neither the file nor its compressed
+	 *                               version could be opened.
+	 */
+	public static Scanner open(String path) throws FileNotFoundException{
+		String resolved = resolve(path);
+		if(!resolved.endsWith(GZIP_SUFFIX)){
+			return new Scanner(new File(resolved));
+		}
+		final InputStream in = new FileInputStream(resolved);
+		final ChunkReader reader = new ChunkReader(resolved);
+		Thread producer = new Thread(new Runnable(){
+			public void run(){
+				reader.produce(in);
+			}
+		}, "gunzip " + resolved);
+
+		// An abandoned Scanner shouldn't keep the program running
+		producer.setDaemon(true);
+		reader.producer = producer;
+		producer.start();
+		return new Scanner(reader);
+	}
+
+	/**
+	 * Hands the chunks decompressed on one thread to a Reader used on another.
+	 */
+	private static class ChunkReader extends Reader{
+
+		// Marks the end of the file.
+		private static final char[] END = new char[0];
+
+		// Marks that the file couldn't be decompressed, see failure.
+		private static final char[] FAILED = new char[0];
+
+		private String path;
+		private BlockingQueue<char[]> chunks =
+				new ArrayBlockingQueue<char[]>(CHUNKS_AHEAD);
+		private Thread producer;
+		private volatile boolean closed;
+		private volatile Throwable failure;
+
+		private char[] chunk = new char[0];
+		private int position;
+
+		private ChunkReader(String path){
+			this.path = path;
+		}
+
+		/**
+		 * Decompresses the whole file into the queue, run by the producer
+		 * thread.
+		 */
+		private void produce(InputStream in){
+			try{
+				InputStream unzipped;
+				try{
+					unzipped = new GZIPInputStream(
+							new BufferedInputStream(in, CHUNK_SIZE), CHUNK_SIZE);
+				}
+				catch(IOException e){
+
+					// Not a gzip file, nothing else will close the file
+					in.close();
+					throw e;
+				}
+				Reader decoded = new InputStreamReader(unzipped);
+				try{
+					int read;
+					char[] buffer = new char[CHUNK_SIZE];
+					while(!closed && (read = decoded.read(buffer)) >= 0){
+						if(read > 0){
+							char[] full = new char[read];
+							System.arraycopy(buffer, 0, full, 0, read);
+							chunks.put(full);
+						}
+					}
+				}
+				finally{
+					decoded.close();
+				}
+				chunks.put(END);
+			}
+			catch(InterruptedException e){
+				// Closed, no one is reading any more
+			}
+			catch(Throwable e){
+				if(!closed){
+
+					// The rest of the file is lost anyway, so make room for
+					// the failure rather than wait for the reader to catch up
+					failure = e;
+					chunks.clear();
+					chunks.offer(FAILED);
+				}
+			}
+		}
+
+		/**
+		 * @throws IllegalStateException If the file couldn't be decompressed.
+		 */
+		public int read(char[] chars, int off, int len) throws IOException{
+			if(len == 0){
+				return 0;
+			}
+			if(position == chunk.length){
+				if(chunk == END){
+					return -1;
+				}
+				if(chunk != FAILED){
+					try{
+						chunk = chunks.take();
+					}
+					catch(InterruptedException e){
+						throw new InterruptedIOException();
+					}
+					position = 0;
+				}
+				if(chunk == END){
+					return -1;
+				}
+				if(chunk == FAILED){
+					throw new IllegalStateException("Unable to decompress '"
+													+ path + "'", failure);
+				}
+			}
+			int read = Math.min(len, chunk.length - position);
+			System.arraycopy(chunk, position, chars, off, read);
+			position += read;
+			return read;
+		}
+
+		public void close(){
+			closed = true;
+			producer.interrupt();
+		}
+	}
+}
@@ -0,0 +1,130 @@
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * The days each stock went up and the days it went down, as bitsets over
+ * a list of NASDAQ days (bit d of a set is day d). The days a stock has data
+ * for are just the union of the two. Whether a group of stocks all moved the
+ * same way on a day is then the AND of their sets, 64 days at a time.
+ */
+public class MovementBitsets{
+
+	private List<Example> examples;
+	private int words;
+	private HashMap<String, long[]> up;
+	private HashMap<String, long[]> down;
+
+	/**
+	 * @param stocks   The market data, by date and then symbol.
+	 * @param examples The days to cover.
+	 * @param symbols  The stocks to cover.
+	 */
+	public MovementBitsets(HashMap<String, HashMap<String, ModelData>> stocks,
+						   List<Example> examples, List<String> symbols){
+		this.examples = examples;
+		words = (examples.size() + 63) / 64;
+		up = new HashMap<String, long[]>();
+		down = new HashMap<String, long[]>();
+		for(String symbol : symbols){
+			up.put(symbol, new long[words]);
+			down.put(symbol, new long[words]);
+		}
+		for(int d = 0; d < examples.size(); d++){
+			HashMap<String, ModelData> day = stocks.get(examples.get(d).date);
+			if(day == null){
+				continue;
+			}
+			for(String symbol : symbols){
+				ModelData md = day.get(symbol);
+				if(md == null){
+					continue;
+				}
+				long[] set = md.close > md.open ? up.get(symbol)
+												: down.get(symbol);
+				set[d >> 6] |= 1L << d;
+			}
+		}
+	}
+
+	/**
+	 * @param examples Some days.
+	 * @return True if these bitsets are over exactly those days.
+	 */
+	public boolean covers(List<Example> examples){
+		return this.examples == examples;
+	}
+
+	/**
+	 * Counts the days in a range on which every stock in a group moved the
+	 * same way.
+	 *
+	 * @param symbols The group of stocks.
+	 * @param start   The first day to count.
+	 * @param end     The day after the last to count.
+	 * @return The number of days they all went up or all went down.
+	 */
+	public int support(String[] symbols, int start, int end){
+		long[][] ups = resolve(up, symbols);
+		long[][] downs = resolve(down, symbols);
+		int count = 0;
+		for(int w = start >> 6; w < words && w << 6 < end; w++){
+			long mask = -1L;
+			if(w == start >> 6){
+				mask &= -1L << start;
+			}
+			if((w + 1) << 6 > end){
+				mask &= -1L >>> (64 - (end & 63));
+			}
+			count += Long.bitCount(and(ups, w) & mask)
+					 + Long.bitCount(and(downs, w) & mask);
+		}
+		return count;
+	}
+
+	/**
+	 * @param symbols The group of stocks.
+	 * @return For each day, 1 if they all went up, -1 if they all went down,
+	 *         and 0 otherwise.
+	 */
+	public byte[] predictions(String[] symbols){
+		long[][] ups = resolve(up, symbols);
+		long[][] downs = resolve(down, symbols);
+		byte[] pred = new byte[examples.size()];
+		for(int w = 0; w < words; w++){
+			long allUp = and(ups, w);
+			long allDown = and(downs, w);
+			while(allUp != 0){
+				pred[(w << 6) + Long.numberOfTrailingZeros(allUp)] = 1;
+				allUp &= allUp - 1;
+			}
+			while(allDown != 0){
+				pred[(w << 6) + Long.numberOfTrailingZeros(allDown)] = -1;
+				allDown &= allDown - 1;
+			}
+		}
+		return pred;
+	}
+
+	private static long[][] resolve(HashMap<String, long[]> sets,
+									String[] symbols){
+		long[][] resolved = new long[symbols.length][];
+		for(int s = 0; s < symbols.length; s++){
+			resolved[s] = sets.get(symbols[s]);
+			if(resolved[s] == null){
+				throw new IllegalArgumentException("No movements for "
+												   + symbols[s]);
+			}
+		}
+		return resolved;
+	}
+
+	private static long and(long[][] sets, int w){
+		long word = -1L;
+		for(long[] set : sets){
+			word &= set[w];
+		}
+		return word;
+	}
+}
@@ -11,6 +11,7 @@ public class ParallelMovement implements Hypothesis{
 	private static HashMap<String, HashMap<String, ModelData>> data = null;
 	private String symbol;
 	private double weight;
+	private double bias;
 
 	public ParallelMovement(HashMap<String, HashMap<String, ModelData>> data, String symbol){
 		this.data = data;
@@ -37,6 +38,10 @@ public class ParallelMovement implements Hypothesis{
 		return model.close > model.open ? 1 : -1;
 	}
 
+	public String getSymbol(){
+		return symbol;
+	}
+
 	public double getWeight(){
 		return weight;
 	}
@@ -45,6 +50,14 @@ public class ParallelMovement implements Hypothesis{
 		this.weight = weight;
 	}
 
+	public double getBias(){
+		return bias;
+	}
+
+	public void setBias(double bias){
+		this.bias = bias;
+	}
+
 	public String toString(){
 		return "PA," + symbol;
 	}
@@ -0,0 +1,277 @@
+import java.io.*;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * An on-disk cache of Hypothesis predictions, so that a run only evaluates
+ * the Hypothesis it hasn't seen before on the same data. Entries are keyed by
+ * the stringified Hypothesis (such as "PA,MMM" or "TO"), and live in a file
+ * named after a fingerprint of the input files and the days evaluated. When
+ * the data changes, so does the file, and everything is evaluated again.
+ * <p/>
+ * The cache file is a sequence of entries, each the Hypothesis descriptor
+ * (as written by DataOutput.writeUTF), the number of days, and one byte per
+ * day. New entries are appended under a file lock, so several processes can
+ * share a cache. Any entry cut short (say, by a killed run) is ignored.
+ * <p/>
+ * Opening a cache only reads where each entry is, and a vector is read from
+ * the file when it is asked for, so a run needing a few of the Hypothesis
+ * (or a worker needing its share of them) only holds those in memory.
+ * Entries are only ever appended, so where an entry is never changes.
+ */
+public class PredictionCache{
+
+	// Bumped whenever the way predictions are computed changes.
+	private static final int VERSION = 1;
+
+	private File file;
+
+	/*
+	 * Where the vector of each entry in the file starts, and its length.
+	 */
+	private HashMap<String, long[]> index;
+
+	/*
+	 * The entries put since opening, which pending lists until flushed.
+	 */
+	private HashMap<String, byte[]> vectors;
+	private ArrayList<String> pending;
+
+	/*
+	 * The cache file, opened for reading vectors on the first get().
+	 */
+	private RandomAccessFile reader;
+
+	/**
+	 * Opens the cache for the given data, finding whatever was cached so far.
+	 *
+	 * @param dir         The directory cache files are kept in.
+	 * @param fingerprint A fingerprint of the input files, from fingerprint().
+	 * @param examples    The days predictions are made for.
+	 */
+	public PredictionCache(File dir, String fingerprint,
+						   ArrayList<Example> examples){
+		MessageDigest digest = newDigest();
+		digest.update(fingerprint.getBytes());
+		digest.update((byte) VERSION);
+		for(Example ex : examples){
+			digest.update(ex.date.getBytes());
+			digest.update((byte) ',');
+		}
+		file = new File(dir, hex(digest.digest()) + ".bin");
+		index = new HashMap<String, long[]>();
+		vectors = new HashMap<String, byte[]>();
+		pending = new ArrayList<String>();
+		load();
+	}
+
+	/**
+	 * Fingerprints the contents of a set of files. A file only available
+	 * compressed is fingerprinted as it is on disk, see MarketInput.
+	 *
+	 * @param paths The files to fingerprint.
+	 * @return The fingerprint, as a hex string.
+	 * @throws IOException If a file couldn't be read.
+	 */
+	public static String fingerprint(String... paths) throws IOException{
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[64 * 1024];
+		for(String path : paths){
+			InputStream in = new FileInputStream(MarketInput.resolve(path));
+			try{
+				int read;
+				while((read = in.read(buffer)) > 0){
+					digest.update(buffer, 0, read);
+				}
+			}
+			finally{
+				in.close();
+			}
+			digest.update((byte) 0);
+		}
+		return hex(digest.digest());
+	}
+
+	/**
+	 * @param descriptor The stringified Hypothesis.
+	 * @param length     The number of days expected.
+	 * @return The cached predictions, or null if there were none.
+	 */
+	public byte[] get(String descriptor, int length){
+		byte[] vector = vectors.get(descriptor);
+		if(vector != null){
+			return vector.length == length ? vector : null;
+		}
+		long[] entry = index.get(descriptor);
+		if(entry == null || entry[1] != length){
+			return null;
+		}
+		try{
+			if(reader == null){
+				reader = new RandomAccessFile(file, "r");
+			}
+			vector = new byte[length];
+			reader.seek(entry[0]);
+			reader.readFully(vector);
+			return vector;
+		}
+		catch(IOException e){
+			System.err.println("Unable to read predictions from '" + file
+							   + "'! Continuing...");
+			index.clear();
+			return null;
+		}
+	}
+
+	/**
+	 * Caches predictions, they won't be saved to disk until flush().
+	 *
+	 * @param descriptor The stringified Hypothesis.
+	 * @param vector     Its predictions.
+	 */
+	public void put(String descriptor, byte[] vector){
+		if(vectors.put(descriptor, vector) == null){
+			pending.add(descriptor);
+		}
+	}
+
+	/**
+	 * Appends every new entry to the cache file, and closes it for reading.
+	 * Failing to save isn't fatal, the predictions will just be evaluated
+	 * again next time.
+	 */
+	public void flush(){
+		close(reader);
+		reader = null;
+		if(pending.isEmpty()){
+			return;
+		}
+		RandomAccessFile cache = null;
+		try{
+			file.getParentFile().mkdirs();
+			cache = new RandomAccessFile(file, "rw");
+			FileLock lock = cache.getChannel().lock();
+			try{
+
+				// Drop anything cut short, or our entries would be misread
+				cache.setLength(scan(cache, null));
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(bytes);
+				for(String descriptor : pending){
+					byte[] vector = vectors.get(descriptor);
+					out.writeUTF(descriptor);
+					out.writeInt(vector.length);
+					out.write(vector);
+				}
+				cache.seek(cache.length());
+				cache.write(bytes.toByteArray());
+			}
+			finally{
+				lock.release();
+			}
+			pending.clear();
+		}
+		catch(IOException e){
+			System.err.println("Unable to save predictions to '" + file
+							   + "'! Continuing...");
+		}
+		finally{
+			close(cache);
+		}
+	}
+
+	private void load(){
+		if(!file.exists()){
+			return;
+		}
+		RandomAccessFile cache = null;
+		try{
+			cache = new RandomAccessFile(file, "r");
+			FileLock lock = cache.getChannel().lock(0, Long.MAX_VALUE, true);
+			try{
+				scan(cache, index);
+			}
+			finally{
+				lock.release();
+			}
+		}
+		catch(IOException e){
+			System.err.println("Unable to read predictions from '" + file
+							   + "'! Continuing...");
+		}
+		finally{
+			close(cache);
+		}
+	}
+
+	/**
+	 * Finds every complete entry from the start of the cache file.
+	 *
+	 * @param cache The cache file.
+	 * @param index Where to put the position and length of the vector of each
+	 *              entry found, or null to just skip them.
+	 * @return The length of the file up to the end of the last full entry.
+	 */
+	private static long scan(RandomAccessFile cache,
+							 HashMap<String, long[]> index)
+			throws IOException{
+		long length = cache.length();
+		long valid = 0;
+		cache.seek(0);
+		try{
+			while(valid < length){
+				String descriptor = cache.readUTF();
+				int size = cache.readInt();
+				if(size < 0 || cache.getFilePointer() + size > length){
+					break;
+				}
+				if(index != null){
+					index.put(descriptor,
+							  new long[]{cache.getFilePointer(), size});
+				}
+				cache.seek(cache.getFilePointer() + size);
+				valid = cache.getFilePointer();
+			}
+		}
+		catch(EOFException e){
+			// An entry cut short, everything before it is still good
+		}
+		catch(UTFDataFormatException e){
+			// Likewise
+		}
+		return valid;
+	}
+
+	private static void close(RandomAccessFile cache){
+		try{
+			if(cache != null){
+				cache.close();
+			}
+		}
+		catch(IOException e){
+			// Nothing more we can do, the cache is only an optimization
+		}
+	}
+
+	static MessageDigest newDigest(){
+		try{
+			return MessageDigest.getInstance("SHA-1");
+		}
+		catch(NoSuchAlgorithmException e){
+			throw new IllegalStateException("SHA-1 is always available", e);
+		}
+	}
+
+	static String hex(byte[] bytes){
+		StringBuilder sb = new StringBuilder();
+		for(byte b : bytes){
+			sb.append(String.format("%02x", b & 0xff));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,285 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * The predictions of every Hypothesis on every Example, evaluated once up
+ * front. Boosting only ever needs to know what each Hypothesis predicted and
+ * how the NASDAQ actually moved, so keeping those as packed primitive arrays
+ * saves a pair of hash lookups per Hypothesis, per Example, per round.
+ */
+public class PredictionTable implements Candidates{
+
+	/*
+	 * The prediction (1, -1 or 0 for missing data) of each Hypothesis, indexed
+	 * by Hypothesis and then by Example.
+	 */
+	private byte[][] predictions;
+
+	/*
+	 * How the NASDAQ moved for each Example, 1 for up and -1 for down.
+	 */
+	private byte[] labels;
+
+	/*
+	 * The stringified form of each Hypothesis, as written to the stumps file.
+	 */
+	private String[] descriptors;
+
+	/*
+	 * The Examples this table covers, which may only be a window of the
+	 * arrays above.
+	 */
+	private int offset;
+	private int length;
+
+	/*
+	 * The sums of the Hypothesis being scored by best(), kept so a round
+	 * doesn't allocate. A table is only used by one thread at a time, and
+	 * every view has its own.
+	 */
+	private double[] candidate = new double[4];
+
+	public PredictionTable(byte[][] predictions, byte[] labels,
+						   String[] descriptors){
+		this(predictions, labels, descriptors, 0, labels.length);
+	}
+
+	private PredictionTable(byte[][] predictions, byte[] labels,
+							String[] descriptors, int offset, int length){
+		this.predictions = predictions;
+		this.labels = labels;
+		this.descriptors = descriptors;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * A view of a contiguous range of the Examples, which shares this table's
+	 * arrays rather than copying them. With the Examples in date order (see
+	 * TradingCalendar) this is a window of days.
+	 *
+	 * @param start The first Example in the window.
+	 * @param end   The Example after the last one in the window.
+	 * @return The view.
+	 */
+	public PredictionTable window(int start, int end){
+		if(start < 0 || end < start || end > length){
+			throw new IndexOutOfBoundsException("Bad window [" + start + ", "
+												+ end + ") of " + length);
+		}
+		return new PredictionTable(predictions, labels, descriptors,
+								   offset + start, end - start);
+	}
+
+	/**
+	 * The same predictions against different labels, such as a shuffle of the
+	 * real ones. The predictions are shared rather than copied.
+	 *
+	 * @param labels The new labels, for every Example of the full table (not
+	 *               just this window).
+	 * @return The relabeled table, over the same window as this one.
+	 */
+	public PredictionTable withLabels(byte[] labels){
+		if(labels.length != this.labels.length){
+			throw new IllegalArgumentException("Expected " + this.labels.length
+											   + " labels, got "
+											   + labels.length);
+		}
+		return new PredictionTable(predictions, labels, descriptors, offset,
+								   length);
+	}
+
+	/**
+	 * A table of just some of the Hypothesis, which shares their predictions
+	 * rather than copying them.
+	 *
+	 * @param hypothesis The index of each Hypothesis to keep, in the order
+	 *                   they should appear.
+	 * @return The table.
+	 */
+	public PredictionTable select(int[] hypothesis){
+		byte[][] selected = new byte[hypothesis.length][];
+		String[] selectedDescriptors = new String[hypothesis.length];
+		for(int h = 0; h < hypothesis.length; h++){
+			selected[h] = predictions[hypothesis[h]];
+			selectedDescriptors[h] = descriptors[hypothesis[h]];
+		}
+		return new PredictionTable(selected, labels, selectedDescriptors,
+								   offset, length);
+	}
+
+	/**
+	 * Evaluates every Hypothesis against every Example.
+	 *
+	 * @param hypothesis The Hypothesis to evaluate.
+	 * @param examples   The NASDAQ movements to evaluate them on.
+	 * @return The evaluated predictions.
+	 */
+	public static PredictionTable build(ArrayList<Hypothesis> hypothesis,
+										ArrayList<Example> examples){
+		byte[][] predictions = new byte[hypothesis.size()][];
+		String[] descriptors = new String[hypothesis.size()];
+		for(int h = 0; h < predictions.length; h++){
+			predictions[h] = evaluate(hypothesis.get(h), examples);
+			descriptors[h] = hypothesis.get(h).toString();
+		}
+		return new PredictionTable(predictions, labels(examples), descriptors);
+	}
+
+	/**
+	 * The same as build(), but predictions already in the cache are reused
+	 * rather than evaluated again, and any new ones are saved to it.
+	 *
+	 * @param hypothesis The Hypothesis to evaluate.
+	 * @param examples   The NASDAQ movements to evaluate them on.
+	 * @param cache      The cache for these examples.
+	 * @return The evaluated predictions.
+	 */
+	public static PredictionTable build(ArrayList<Hypothesis> hypothesis,
+										ArrayList<Example> examples,
+										PredictionCache cache){
+		byte[][] predictions = new byte[hypothesis.size()][];
+		String[] descriptors = new String[hypothesis.size()];
+		for(int h = 0; h < predictions.length; h++){
+			String descriptor = hypothesis.get(h).toString();
+			byte[] vector = cache.get(descriptor, examples.size());
+			if(vector == null){
+				vector = evaluate(hypothesis.get(h), examples);
+				cache.put(descriptor, vector);
+			}
+			predictions[h] = vector;
+			descriptors[h] = descriptor;
+		}
+		cache.flush();
+		return new PredictionTable(predictions, labels(examples), descriptors);
+	}
+
+	/**
+	 * @param h        The Hypothesis to evaluate.
+	 * @param examples The NASDAQ movements to evaluate it on.
+	 * @return The prediction of the Hypothesis for each Example.
+	 */
+	public static byte[] evaluate(Hypothesis h, ArrayList<Example> examples){
+
+		// Groups of stocks are evaluated from bitsets when they have them
+		if(h instanceof CoMovement){
+			byte[] vector = ((CoMovement) h).predictions(examples);
+			if(vector != null){
+				return vector;
+			}
+		}
+		byte[] vector = new byte[examples.size()];
+		for(int ex = 0; ex < vector.length; ex++){
+			vector[ex] = (byte) h.prediction(examples.get(ex));
+		}
+		return vector;
+	}
+
+	/**
+	 * @param examples The NASDAQ movements to label.
+	 * @return How the NASDAQ moved for each Example.
+	 */
+	public static byte[] labels(List<Example> examples){
+		byte[] labels = new byte[examples.size()];
+		for(int ex = 0; ex < labels.length; ex++){
+			labels[ex] = label(examples.get(ex));
+		}
+		return labels;
+	}
+
+	/**
+	 * @param ex The example to label.
+	 * @return 1 if the NASDAQ closed higher than it opened, -1 otherwise.
+	 */
+	public static byte label(Example ex){
+		return (byte) (ex.close > ex.open ? 1 : -1);
+	}
+
+	/**
+	 * Accumulates two per-Example vectors against the predictions of a single
+	 * Hypothesis. Every booster's choice of model can be made from these four
+	 * sums:
+	 * <ul>
+	 * <li>out[0] is the sum of prediction * a</li>
+	 * <li>out[1] is the sum of a where the prediction was not 0</li>
+	 * <li>out[2] is the sum of prediction * b</li>
+	 * <li>out[3] is the sum of b where the prediction was not 0</li>
+	 * </ul>
+	 *
+	 * @param h   The Hypothesis to accumulate for.
+	 * @param a   The first per-Example vector, indexed from the start of this
+	 *            table's window.
+	 * @param b   The second per-Example vector, may be null if not needed, in
+	 *            which case out[2] and out[3] are left as 0.
+	 * @param out Where to store the four sums.
+	 */
+	public void sums(int h, double[] a, double[] b, double[] out){
+		WeightedErrorKernel.sums(predictions[h], offset, a, b, length, out);
+	}
+
+	/**
+	 * The same as sums(), but only over a sample of the Examples. The vectors
+	 * are indexed by sample rather than by Example, so the caller gathers
+	 * (and scales) them once for every Hypothesis.
+	 *
+	 * @param h     The Hypothesis to accumulate for.
+	 * @param a     The first vector, for each sampled Example.
+	 * @param b     The second vector, for each sampled Example, may be null.
+	 * @param rows  The Example each sample was taken from, counted from the
+	 *              start of this table's window.
+	 * @param count The number of samples.
+	 * @param out   Where to store the four sums.
+	 */
+	public void sums(int h, double[] a, double[] b, int[] rows, int count,
+					 double[] out){
+		WeightedErrorKernel.sums(predictions[h], offset, a, b, rows, count,
+								 out);
+	}
+
+	public int best(Booster booster, double[] a, double[] b, int[] rows,
+					int count, double total, double[] out){
+		int bestModel = 0;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for(int h = 0; h < predictions.length; h++){
+			if(rows != null){
+				sums(h, a, b, rows, count, candidate);
+			}
+			else{
+				sums(h, a, b, candidate);
+			}
+			double score = booster.score(candidate, total);
+			if(score > bestScore){
+				bestModel = h;
+				bestScore = score;
+				System.arraycopy(candidate, 0, out, 0, out.length);
+			}
+		}
+		return bestModel;
+	}
+
+	public int getExampleCount(){
+		return length;
+	}
+
+	public int getOffset(){
+		return offset;
+	}
+
+	public int getHypothesisCount(){
+		return predictions.length;
+	}
+
+	public byte[] getLabels(){
+		return labels;
+	}
+
+	public byte[] getPredictions(int h){
+		return predictions[h];
+	}
+
+	public String getDescriptor(int h){
+		return descriptors[h];
+	}
+}
@@ -0,0 +1,123 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Real AdaBoost, from Schapire and Singer's "Improved Boosting Algorithms
+ * Using Confidence-rated Predictions". Rather than a single weight, each
+ * stump gets a separate confidence for the days it predicts "Up" and the days
+ * it predicts "Down", and the model chosen is the one that minimizes the
+ * normalization factor Z. Days a Hypothesis has no data for are treated as an
+ * abstention, just as the discrete AdaBoost does.
+ * <p/>
+ * The two confidences are kept as a weight, half their difference, and a bias,
+ * half their sum, so a stump votes exactly its "Up" or "Down" confidence.
+ */
+public class RealAdaBoost extends AbstractBooster{
+
+	/*
+	 * The accumulated confidence of each Hypothesis when it predicts "Up" and
+	 * when it predicts "Down".
+	 */
+	private double[] upConfidence;
+	private double[] downConfidence;
+
+	// Smoothing for bins with no weight in them, as suggested in the paper.
+	private double epsilon;
+
+	public void init(Candidates table, double[] weights, double[] examples){
+		super.init(table, new double[weights.length], examples);
+		upConfidence = new double[weights.length];
+		downConfidence = new double[weights.length];
+		hypothesisBiases = new double[weights.length];
+		b = new double[exampleWeights.length];
+		epsilon = 1.0 / (2 * exampleWeights.length);
+	}
+
+	public int round(){
+		for(int ex = 0; ex < a.length; ex++){
+			a[ex] = labels[offset + ex] > 0 ? exampleWeights[ex] : 0.0;
+			b[ex] = labels[offset + ex] > 0 ? 0.0 : exampleWeights[ex];
+		}
+		int model = select(true);
+
+		// Z can't be more than 1, and at 1 the model tells us nothing
+		if(-score(chosen, selectedWeight) >= 1.0){
+			return -1;
+		}
+
+		double up = 0.5 * Math.log((upWhenUp(chosen) + epsilon)
+								   / (downWhenUp(chosen) + epsilon));
+		double down = 0.5 * Math.log((upWhenDown(chosen) + epsilon)
+									 / (downWhenDown(chosen) + epsilon));
+		upConfidence[model] += up;
+		downConfidence[model] += down;
+		hypothesisWeights[model] =
+				(upConfidence[model] - downConfidence[model]) / 2;
+		hypothesisBiases[model] =
+				(upConfidence[model] + downConfidence[model]) / 2;
+
+		byte[] pred = table.getPredictions(model);
+		double upScale = Math.exp(-up);
+		double downScale = Math.exp(-down);
+		for(int ex = 0; ex < exampleWeights.length; ex++){
+			int p = pred[offset + ex];
+			if(p == 0){
+				continue;
+			}
+			double scale = p > 0 ? upScale : downScale;
+			exampleWeights[ex] *= labels[offset + ex] > 0 ? scale : 1.0 / scale;
+		}
+		normalize(exampleWeights);
+		return model;
+	}
+
+	/**
+	 * Models are rated by how small they make Z, where abstentions keep their
+	 * weight.
+	 */
+	public double score(double[] sums, double total){
+		double abstain = total - sums[1] - sums[3];
+		double z = 2 * (Math.sqrt(upWhenUp(sums) * downWhenUp(sums))
+						+ Math.sqrt(upWhenDown(sums) * downWhenDown(sums)))
+				   + Math.max(abstain, 0.0);
+		return -z;
+	}
+
+	public void writeState(DataOutput out) throws IOException{
+		super.writeState(out);
+		Checkpointer.writeArray(out, upConfidence);
+		Checkpointer.writeArray(out, downConfidence);
+	}
+
+	public void readState(DataInput in) throws IOException{
+		super.readState(in);
+		Checkpointer.readArray(in, upConfidence);
+		Checkpointer.readArray(in, downConfidence);
+		for(int h = 0; h < hypothesisBiases.length; h++){
+			hypothesisBiases[h] = (upConfidence[h] + downConfidence[h]) / 2;
+		}
+	}
+
+	// The weight of the NASDAQ going up on days the stump predicted up.
+	private static double upWhenUp(double[] sums){
+		return Math.max((sums[1] + sums[0]) / 2, 0.0);
+	}
+
+	// The weight of the NASDAQ going down on days the stump predicted up.
+	private static double downWhenUp(double[] sums){
+		return Math.max((sums[3] + sums[2]) / 2, 0.0);
+	}
+
+	// The weight of the NASDAQ going up on days the stump predicted down.
+	private static double upWhenDown(double[] sums){
+		return Math.max((sums[1] - sums[0]) / 2, 0.0);
+	}
+
+	// The weight of the NASDAQ going down on days the stump predicted down.
+	private static double downWhenDown(double[] sums){
+		return Math.max((sums[3] - sums[2]) / 2, 0.0);
+	}
+}
@@ -0,0 +1,77 @@
+import java.io.IOException;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Candidates whose predictions are held by the workers in a WorkerPool. Only
+ * the labels are kept locally, predictions are fetched from the owning worker
+ * when needed, and the most recent one is kept since a Booster usually asks
+ * for the same one more than once.
+ */
+public class RemoteCandidates implements Candidates{
+
+	private WorkerPool pool;
+	private int view;
+	private byte[] labels;
+	private int hypothesisCount;
+
+	private int cached = -1;
+	private byte[] cachedPredictions;
+
+	/**
+	 * @param pool            The workers holding the predictions.
+	 * @param view            WorkerPool.TRAINING or WorkerPool.VALIDATION.
+	 * @param labels          How the NASDAQ moved for each Example.
+	 * @param hypothesisCount The number of Hypothesis across all workers.
+	 */
+	public RemoteCandidates(WorkerPool pool, int view, byte[] labels,
+							int hypothesisCount){
+		this.pool = pool;
+		this.view = view;
+		this.labels = labels;
+		this.hypothesisCount = hypothesisCount;
+	}
+
+	public int best(Booster booster, double[] a, double[] b, int[] rows,
+					int count, double total, double[] out){
+		if(view != WorkerPool.TRAINING){
+			throw new UnsupportedOperationException(
+					"Models are only chosen from the training Examples");
+		}
+		try{
+			return pool.best(a, b, rows, count, total, out);
+		}
+		catch(IOException e){
+			throw new IllegalStateException("Lost contact with a worker", e);
+		}
+	}
+
+	public int getExampleCount(){
+		return labels.length;
+	}
+
+	public int getOffset(){
+		return 0;
+	}
+
+	public int getHypothesisCount(){
+		return hypothesisCount;
+	}
+
+	public byte[] getLabels(){
+		return labels;
+	}
+
+	public byte[] getPredictions(int h){
+		if(h != cached){
+			try{
+				cachedPredictions = pool.predictions(view, h);
+			}
+			catch(IOException e){
+				throw new IllegalStateException("Lost contact with a worker", e);
+			}
+			cached = h;
+		}
+		return cachedPredictions;
+	}
+}
@@ -0,0 +1,541 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Scanner;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Retrains only when the stumps stop working, rather than every night.
+ * <p/>
+ * Each day given is predicted with the best stumps, as TestOneDay does, and
+ * checked against what the NASDAQ really did (the first line of its result
+ * file, 1 for up or -1 for down). The outcome goes to a DriftMonitor, and if
+ * it finds the stumps have drifted, Learn, TestTraining and
+ * TestAgainstTraining are run again, each in a process of its own just as
+ * they would be by hand. They train on whatever is in input/market_data.txt
+ * and input/nasdaq_data.csv by then: the scheduler only reads the day files
+ * (a result file doesn't have the NASDAQ's prices to add to the history), so
+ * adding new days to the history is left to whatever delivers them. If the
+ * history hasn't changed since the stumps were trained, retraining would
+ * only produce the same stumps again, so it is skipped and logged as
+ * "unchanged" until it has. Days after a retrain are predicted with the new
+ * stumps.
+ * <p/>
+ * The monitor is kept in stump_output/drift_state.bin between runs, so the
+ * scheduler can be run once a day with just that day's files. The state
+ * belongs to the stumps it was watching, and starts over if they are
+ * replaced some other way. A retrain that is killed, or that fails, is
+ * started again by the next run, resuming from Learn's checkpoint if it was
+ * given -checkpoint. Until then the old stumps carry on being used.
+ * Every day's outcome is appended to stump_output/drift_log.txt.
+ */
+public class RetrainScheduler{
+
+	private static final String STUMP_DIR = "stump_output";
+	private static final String STUMP_FILE = "best_stumps.txt";
+	private static final String STUMP_PATH = STUMP_DIR + File.separator +
+											 STUMP_FILE;
+
+	// The state of the monitor between runs.
+	private static final String STATE_FILE = "drift_state.bin";
+	private static final String STATE_PATH = STUMP_DIR + File.separator +
+											 STATE_FILE;
+
+	// Every day's outcome, and any retrains.
+	private static final String LOG_FILE = "drift_log.txt";
+	private static final String LOG_PATH = STUMP_DIR + File.separator +
+										   LOG_FILE;
+
+	private static final int MAGIC = 0x4d4c4453;
+
+	// Bumped whenever the layout of the state changes.
+	private static final int VERSION = 2;
+
+	private static final String USAGE =
+			"Usage: java RetrainScheduler [-date YYYYMMDD] -day DAY_FILE "
+			+ "RESULT_FILE\n"
+			+ "                             [[-date YYYYMMDD] -day DAY_FILE "
+			+ "RESULT_FILE...]\n"
+			+ "                             [-window DAYS] [-delta D] "
+			+ "[-lambda L] [-warmup DAYS]\n"
+			+ "                             [-floor ACCURACY] "
+			+ "[Learn options]";
+
+	private DriftMonitor monitor;
+	private String[] learnArgs;
+
+	/*
+	 * A fingerprint of the stumps being watched.
+	 */
+	private String stumps;
+
+	/*
+	 * A fingerprint of the market history the stumps were trained on.
+	 */
+	private String trainedOn;
+
+	/*
+	 * True from the moment a retrain starts until it finishes.
+	 */
+	private boolean pending;
+
+	/*
+	 * True if a retrain failed during this run.
+	 */
+	private boolean failed;
+
+	private BufferedWriter log;
+
+	public static void main(String[] args){
+		int window = 20;
+		double delta = 0.005;
+		double lambda = 3.0;
+		int warmup = 10;
+		double floor = 0.5;
+		ArrayList<String> days = new ArrayList<String>();
+		ArrayList<String> dates = new ArrayList<String>();
+		ArrayList<String> results = new ArrayList<String>();
+		String date = null;
+		ArrayList<String> rest = new ArrayList<String>();
+		try{
+			for(int i = 0; i < args.length; i++){
+				String arg = args[i];
+				if(arg.equals("-day")){
+					if(i + 2 >= args.length){
+						throw new IllegalArgumentException(
+								"Expected -day DAY_FILE RESULT_FILE");
+					}
+					days.add(args[++i]);
+					results.add(args[++i]);
+					dates.add(date);
+					date = null;
+					continue;
+				}
+
+				// Picks the date predicted from the next day file
+				if(arg.equals("-date")){
+					if(i + 1 == args.length){
+						throw new IllegalArgumentException("Missing value for "
+														   + arg);
+					}
+					date = args[++i];
+					TradingCalendar.parse(date);
+					continue;
+				}
+				boolean ours = arg.equals("-window") || arg.equals("-delta")
+							   || arg.equals("-lambda")
+							   || arg.equals("-warmup")
+							   || arg.equals("-floor");
+				if(!ours){
+					rest.add(arg);
+					continue;
+				}
+				if(i + 1 == args.length){
+					throw new IllegalArgumentException("Missing value for "
+													   + arg);
+				}
+				String value = args[++i];
+				try{
+					if(arg.equals("-window")){
+						window = Integer.parseInt(value);
+					}
+					else if(arg.equals("-delta")){
+						delta = Double.parseDouble(value);
+					}
+					else if(arg.equals("-lambda")){
+						lambda = Double.parseDouble(value);
+					}
+					else if(arg.equals("-warmup")){
+						warmup = Integer.parseInt(value);
+					}
+					else{
+						floor = Double.parseDouble(value);
+					}
+				}
+				catch(NumberFormatException e){
+					throw new IllegalArgumentException("Bad value for " + arg
+													   + ": " + value);
+				}
+			}
+			if(window < 1 || delta < 0.0 || lambda <= 0.0 || warmup < 0
+			   || floor < 0.0 || floor > 1.0){
+				throw new IllegalArgumentException("Bad drift settings");
+			}
+			if(date != null){
+				throw new IllegalArgumentException("Expected -day after -date");
+			}
+
+			// Check the options now rather than when a retrain comes around
+			LearnOptions.parse(rest.toArray(new String[0]));
+		}
+		catch(IllegalArgumentException e){
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.err.println(LearnOptions.USAGE);
+			System.exit(1);
+		}
+
+		RetrainScheduler scheduler = new RetrainScheduler(
+				new DriftMonitor(window, delta, lambda, warmup, floor),
+				rest.toArray(new String[0]));
+		try{
+			for(int d = 0; d < days.size(); d++){
+				scheduler.ingest(days.get(d), dates.get(d), results.get(d));
+			}
+		}
+		finally{
+			scheduler.close();
+		}
+		if(scheduler.failed){
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Picks up where the last run left off, finishing any retrain it was
+	 * killed during.
+	 *
+	 * @param monitor   A new monitor, with the settings to watch with.
+	 * @param learnArgs The options to run Learn with when retraining.
+	 */
+	public RetrainScheduler(DriftMonitor monitor, String[] learnArgs){
+		this.monitor = monitor;
+		this.learnArgs = learnArgs;
+		try{
+			log = new BufferedWriter(new FileWriter(LOG_PATH, true));
+			if(new File(LOG_PATH).length() == 0){
+				log.write("day,date,prediction,actual,margin,"
+						  + "rolling_accuracy,rolling_margin,page_hinkley,"
+						  + "action\n");
+			}
+		}
+		catch(IOException e){
+			System.err.println("Unable to open output file for processing! " +
+							   "Exiting...");
+			System.exit(1);
+		}
+		restore();
+		if(pending){
+			System.out.println("Finishing the retrain left unfinished last "
+							   + "time");
+			retrain(true);
+		}
+	}
+
+	/**
+	 * Predicts a day, checks the prediction against what really happened,
+	 * and retrains if the stumps have drifted and there is new data to
+	 * retrain on.
+	 *
+	 * @param dayFile    The market data for the day, as given to TestOneDay.
+	 * @param date       The date to predict, or null for the date most of the
+	 *                   day file is for.
+	 * @param resultFile What the NASDAQ did, 1 or -1 on its first line.
+	 */
+	public void ingest(String dayFile, String date, String resultFile){
+		int actual = readResult(resultFile);
+		TestOneDay day = null;
+		try{
+			day = new TestOneDay(MarketInput.open(dayFile),
+								 new Scanner(new File(STUMP_PATH)), null,
+								 date);
+		}
+		catch(FileNotFoundException e){
+			System.err.println("Unable to open input files! Exiting...");
+			System.exit(1);
+		}
+		catch(IllegalArgumentException e){
+			System.err.println("'" + dayFile + "': " + e.getMessage()
+							   + "! Exiting...");
+			System.exit(1);
+		}
+		int prediction = day.getPrediction();
+		boolean drifted = monitor.update(prediction == actual,
+										 day.getMargin() * actual);
+
+		// A retrain that already failed is left for the next run, and one on
+		// the same history would only give the same stumps
+		String history = fingerprintHistory();
+		boolean unchanged = drifted && history.equals(trainedOn);
+		boolean retrain = drifted && !failed && !unchanged;
+		System.out.println("Actual: " + (actual > 0 ? "Up" : "Down")
+						   + ", rolling accuracy "
+						   + monitor.getAccuracy() * 100 + "%, drift "
+						   + monitor.getStatistic());
+		try{
+			log.write(dayFile + "," + day.getDate() + "," + prediction + ","
+					  + actual + "," + day.getMargin() * actual + ","
+					  + monitor.getAccuracy() + "," + monitor.getMargin()
+					  + "," + monitor.getStatistic() + ","
+					  + (retrain ? "retrain" : unchanged ? "unchanged"
+											 : drifted ? "pending" : "none")
+					  + "\n");
+			log.flush();
+		}
+		catch(IOException e){
+			System.err.println("Unable to write to '" + LOG_PATH
+							   + "'! Exiting...");
+			System.exit(1);
+		}
+		if(unchanged){
+			System.out.println("Drift detected after " + monitor.getDays()
+							   + " days, but the market history hasn't "
+							   + "changed since the last retrain, not "
+							   + "retraining");
+		}
+		if(retrain){
+			System.out.println("Drift detected after " + monitor.getDays()
+							   + " days, retraining");
+			retrain(false);
+		}
+		else{
+			save();
+		}
+	}
+
+	public void close(){
+		try{
+			log.close();
+		}
+		catch(IOException e){
+			System.err.println("Unable to close '" + LOG_PATH + "'! The log "
+							   + "may be incomplete!");
+		}
+	}
+
+	/**
+	 * Runs the whole pipeline as it would be run by hand, then starts
+	 * watching the new stumps. If any step fails, the retrain is left for the
+	 * next run to finish, and isn't tried again by this one.
+	 *
+	 * @param resume True to resume Learn from its last checkpoint.
+	 */
+	private void retrain(boolean resume){
+		pending = true;
+		save();
+
+		// Taken before training, in case the history changes while it runs
+		String history = fingerprintHistory();
+		String[] args = learnArgs;
+		if(resume){
+			args = new String[learnArgs.length + 1];
+			System.arraycopy(learnArgs, 0, args, 0, learnArgs.length);
+			args[learnArgs.length] = "-resume";
+		}
+		if(!run("Learn", args) || !run("TestTraining", new String[0])
+		   || !run("TestAgainstTraining", new String[0])){
+			System.err.println("Retraining failed, carrying on with the old "
+							   + "stumps until the next run");
+			failed = true;
+			save();
+			return;
+		}
+		monitor.reset();
+		stumps = fingerprintStumps();
+		trainedOn = history;
+		pending = false;
+		save();
+	}
+
+	/**
+	 * Runs one of the programs in a new JVM, with the same classpath, so that
+	 * it exiting (or failing) doesn't take the scheduler with it. Its output is
+	 * passed through as it is written.
+	 *
+	 * @param program The class to run.
+	 * @param args    Its arguments.
+	 * @return True if it exited successfully.
+	 */
+	private static boolean run(String program, String[] args){
+		ArrayList<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin"
+					+ File.separator + "java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(program);
+		command.addAll(Arrays.asList(args));
+		try{
+			Process process = new ProcessBuilder(command)
+					.redirectErrorStream(true).start();
+			process.getOutputStream().close();
+			InputStream output = process.getInputStream();
+			try{
+				byte[] buffer = new byte[8192];
+				int read;
+				while((read = output.read(buffer)) >= 0){
+					System.out.write(buffer, 0, read);
+				}
+				System.out.flush();
+			}
+			finally{
+				output.close();
+			}
+			int status = process.waitFor();
+			if(status != 0){
+				System.err.println(program + " exited with status " + status);
+				return false;
+			}
+			return true;
+		}
+		catch(IOException e){
+			System.err.println("Unable to run " + program + "! "
+							   + e.getMessage());
+			return false;
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the state saved by the last run, if it was watching the same
+	 * stumps. Otherwise the stumps are taken to have been trained on the
+	 * market history as it is now.
+	 */
+	private void restore(){
+		stumps = fingerprintStumps();
+		trainedOn = fingerprintHistory();
+		File file = new File(STATE_PATH);
+		if(!file.exists()){
+			return;
+		}
+		try{
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+			try{
+				if(in.readInt() != MAGIC || in.readInt() != VERSION){
+					throw new IOException("Not a drift state");
+				}
+				boolean wasPending = in.readBoolean();
+				String watched = in.readUTF();
+				String history = in.readUTF();
+
+				// Retraining replaces the stumps, so an unfinished one means
+				// nothing about the stumps there now
+				if(wasPending){
+					pending = true;
+				}
+				else if(watched.equals(stumps)){
+					trainedOn = history;
+					monitor.readState(in);
+				}
+				else{
+					System.out.println("The stumps have changed, starting "
+									   + "the drift monitor over");
+				}
+			}
+			finally{
+				in.close();
+			}
+		}
+		catch(IOException e){
+			System.out.println("Unable to read '" + STATE_PATH + "' ("
+							   + e.getMessage() + "), starting the drift "
+							   + "monitor over");
+			monitor.reset();
+		}
+	}
+
+	/**
+	 * Replaces the saved state, through a temporary file so a run killed
+	 * while writing leaves the old one intact.
+	 */
+	private void save(){
+		File file = new File(STATE_PATH);
+		File temp = new File(STATE_PATH + ".tmp");
+		try{
+			FileOutputStream stream = new FileOutputStream(temp);
+			try{
+				DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(stream));
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeBoolean(pending);
+				out.writeUTF(stumps);
+				out.writeUTF(trainedOn);
+				monitor.writeState(out);
+				out.flush();
+				stream.getFD().sync();
+			}
+			finally{
+				stream.close();
+			}
+
+			// Renaming over a file fails on some platforms
+			if(!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))){
+				throw new IOException("Unable to rename '" + temp + "'");
+			}
+		}
+		catch(IOException e){
+			System.err.println("Unable to save the drift monitor to '"
+							   + STATE_PATH + "'! Exiting...");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return A fingerprint of the best stumps.
+	 */
+	private static String fingerprintStumps(){
+		try{
+			return PredictionCache.fingerprint(STUMP_PATH);
+		}
+		catch(IOException e){
+			System.err.println("Unable to open file '" + STUMP_PATH
+							   + "'! Exiting...");
+			System.exit(1);
+			return null;
+		}
+	}
+
+	/**
+	 * @return A fingerprint of the market history Learn trains on.
+	 */
+	private static String fingerprintHistory(){
+		try{
+			return PredictionCache.fingerprint(Learn.INPUT_PATH,
+											   Learn.NASDAQ_PATH);
+		}
+		catch(IOException e){
+			System.err.println("Unable to open file '" + Learn.INPUT_PATH
+							   + "' or '" + Learn.NASDAQ_PATH
+							   + "'! Exiting...");
+			System.exit(1);
+			return null;
+		}
+	}
+
+	/**
+	 * @param resultFile A result file, such as input/one_day_result.txt.
+	 * @return How the NASDAQ moved, 1 for up or -1 for down.
+	 */
+	private static int readResult(String resultFile){
+		Scanner result = null;
+		try{
+			result = MarketInput.open(resultFile);
+		}
+		catch(FileNotFoundException e){
+			System.err.println("Unable to open file '" + resultFile
+							   + "'! Exiting...");
+			System.exit(1);
+		}
+		try{
+			String line = result.hasNextLine() ? result.nextLine().trim() : "";
+			if(line.equals("1")){
+				return 1;
+			}
+			if(line.equals("-1")){
+				return -1;
+			}
+			System.err.println("Expected 1 or -1 on the first line of '"
+							   + resultFile + "'! Exiting...");
+			System.exit(1);
+			return 0;
+		}
+		finally{
+			result.close();
+		}
+	}
+}
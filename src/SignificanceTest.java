@@ -0,0 +1,433 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Finds out whether the accuracy of the best stumps means anything, by
+ * rerunning boosting and stump selection on data where there is nothing to
+ * find.
+ * <p/>
+ * Each permutation shuffles which NASDAQ movement goes with which day, so the
+ * stocks no longer tell us anything about the NASDAQ, and the accuracy the
+ * best stumps still manage is down to chance. The p-value is how often chance
+ * did at least as well as the real labels. Each bootstrap instead boosts over
+ * a resample of the days, drawn in blocks of consecutive days so that
+ * streaks in the market are kept, giving a confidence interval for the
+ * accuracy.
+ * <p/>
+ * The predictions of every Hypothesis don't depend on the labels, so the
+ * data is read and the Hypothesis evaluated once, and every replicate only
+ * boosts over the same predictions with different labels or weights. The
+ * replicates are spread across every core.
+ */
+public class SignificanceTest{
+
+	// The results of the test.
+	private static final String OUTPUT_DIR = "stump_output";
+	private static final String OUTPUT_FILE = "significance.txt";
+	private static final String OUTPUT_PATH = OUTPUT_DIR + File.separator +
+											  OUTPUT_FILE;
+
+	private static final String USAGE =
+			"Usage: java SignificanceTest [-permutations N] [-bootstrap N] "
+			+ "[-block DAYS] [-stumps K] [Learn options]";
+
+	// The confidence interval is the middle 95% of the bootstrap.
+	private static final double CONFIDENCE = 0.95;
+
+	private Learn learn;
+	private LearnOptions options;
+
+	/*
+	 * The predictions of every Hypothesis on every day, and the weights they
+	 * start boosting with.
+	 */
+	private PredictionTable all;
+	private double[] startWeights;
+
+	/*
+	 * How the NASDAQ moved each day: 1 for up, -1 for down and 0 for flat.
+	 * Unlike the labels, a flat day can't be called correctly either way.
+	 */
+	private byte[] directions;
+
+	/*
+	 * The positions of the days boosted and validated over.
+	 */
+	private int windowStart;
+	private int windowEnd;
+
+	// The number of stumps voting, as chosen by TestTraining.
+	private int stumps;
+
+	public static void main(String[] args){
+		int permutations = 1000;
+		int bootstrap = 1000;
+		int block = 10;
+		int stumps = 3;
+		ArrayList<String> rest = new ArrayList<String>();
+		LearnOptions options = null;
+		try{
+			for(int i = 0; i < args.length; i++){
+				String arg = args[i];
+				boolean ours = arg.equals("-permutations")
+							   || arg.equals("-bootstrap")
+							   || arg.equals("-block")
+							   || arg.equals("-stumps");
+				if(!ours){
+					rest.add(arg);
+					continue;
+				}
+				if(i + 1 == args.length){
+					throw new IllegalArgumentException("Missing value for "
+													   + arg);
+				}
+				int value;
+				try{
+					value = Integer.parseInt(args[++i]);
+				}
+				catch(NumberFormatException e){
+					throw new IllegalArgumentException("Bad value for " + arg
+													   + ": " + args[i]);
+				}
+				boolean counts = arg.equals("-permutations")
+								 || arg.equals("-bootstrap");
+				if(value < (counts ? 0 : 1)){
+					throw new IllegalArgumentException("Bad value for " + arg
+													   + ": " + value);
+				}
+				if(arg.equals("-permutations")){
+					permutations = value;
+				}
+				else if(arg.equals("-bootstrap")){
+					bootstrap = value;
+				}
+				else if(arg.equals("-block")){
+					block = value;
+				}
+				else{
+					stumps = value;
+				}
+			}
+			options = LearnOptions.parse(rest.toArray(new String[0]));
+		}
+		catch(IllegalArgumentException e){
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.err.println(LearnOptions.USAGE);
+			System.exit(1);
+		}
+		Scanner input = null;
+		Scanner nasdaqInput = null;
+		BufferedWriter output = null;
+
+		// Make sure we get all the file handles we need before we get
+		// started doing the heavy-lifting, no need to have the user wait for
+		// several seconds before they know we can't read/write to a needed
+		// file!
+		try{
+			input = MarketInput.open(Learn.INPUT_PATH);
+			nasdaqInput = MarketInput.open(Learn.NASDAQ_PATH);
+			output = new BufferedWriter(new FileWriter(OUTPUT_PATH));
+		}
+		catch(FileNotFoundException e){
+			System.err.println("Unable to open file for processing! " +
+							   "Exiting...");
+			System.exit(1);
+		}
+		catch(IOException e){
+			System.err.println("Unable to open output file for processing! " +
+							   "Exiting...");
+			System.exit(1);
+		}
+		System.out.println("Found!\nProcessing...");
+		try{
+			SignificanceTest test = new SignificanceTest(input, nasdaqInput,
+														 options, stumps);
+			test.run(permutations, bootstrap, block, output);
+		}
+		catch(IllegalArgumentException e){
+			System.err.println(e.getMessage() + "! Exiting...");
+			System.exit(1);
+		}
+		catch(IOException e){
+			System.err.println("Unable to write results to file '"
+							   + OUTPUT_PATH + "'! Exiting...");
+			System.exit(1);
+		}
+		input.close();
+		nasdaqInput.close();
+	}
+
+	/**
+	 * Reads the data and evaluates every Hypothesis, the only time either is
+	 * done.
+	 *
+	 * @param options The options to boost with, as given to Learn. Boosting
+	 *                is always done in this process, so workers and
+	 *                checkpoints are ignored.
+	 * @param stumps  The number of heaviest stumps that vote.
+	 */
+	public SignificanceTest(Scanner input, Scanner nasdaqInput,
+							LearnOptions options, int stumps){
+		this.options = options;
+		this.stumps = stumps;
+		learn = new Learn(input, nasdaqInput, options);
+		ArrayList<Example> examples = learn.getExamples();
+		all = learn.buildTable(learn.getHypothesis(), examples);
+		if(options.prune > 0.0){
+			all = learn.prune(all);
+		}
+		ArrayList<Hypothesis> hypothesis = learn.getHypothesis();
+		PredictionTable window = learn.getWindow(all);
+		windowStart = window.getOffset();
+		windowEnd = windowStart + window.getExampleCount();
+		startWeights = new double[hypothesis.size()];
+		for(int h = 0; h < startWeights.length; h++){
+			startWeights[h] = hypothesis.get(h).getWeight();
+		}
+		directions = new byte[examples.size()];
+		for(int ex = 0; ex < directions.length; ex++){
+			Example e = examples.get(ex);
+			directions[ex] = (byte) (e.close > e.open ? 1
+									 : e.open > e.close ? -1 : 0);
+		}
+	}
+
+	/**
+	 * Runs every replicate and writes out the accuracy on the real labels,
+	 * its p-value and confidence interval.
+	 *
+	 * @param permutations The number of shuffles of the labels.
+	 * @param bootstrap    The number of resamples of the days.
+	 * @param block        The number of consecutive days drawn at a time when
+	 *                     resampling.
+	 * @param output       Where to write the results, closed once done.
+	 */
+	public void run(int permutations, int bootstrap, final int block,
+					BufferedWriter output) throws IOException{
+		double observed = replicate(all.getLabels(), directions, null);
+		System.out.println("Accuracy of the best " + stumps + " stumps: "
+						   + observed * 100 + "%");
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(cores);
+		double[] permuted;
+		double[] resampled;
+		try{
+			ArrayList<Future<Double>> shuffles = new ArrayList<Future<Double>>();
+			for(int r = 0; r < permutations; r++){
+				final Random random = new Random(options.seed + r);
+				shuffles.add(executor.submit(new Callable<Double>(){
+					public Double call(){
+						return permutation(random);
+					}
+				}));
+			}
+			ArrayList<Future<Double>> resamples =
+					new ArrayList<Future<Double>>();
+			for(int r = 0; r < bootstrap; r++){
+				final Random random = new Random(options.seed + permutations
+												 + r);
+				resamples.add(executor.submit(new Callable<Double>(){
+					public Double call(){
+						return resample(random, block);
+					}
+				}));
+			}
+			permuted = collect(shuffles);
+			resampled = collect(resamples);
+		}
+		finally{
+			executor.shutdownNow();
+		}
+
+		// Counting the real labels as one of the permutations keeps the
+		// p-value from ever being 0
+		int asGood = 0;
+		for(double accuracy : permuted){
+			if(accuracy >= observed){
+				asGood++;
+			}
+		}
+		double p = (1.0 + asGood) / (1.0 + permuted.length);
+		Arrays.sort(resampled);
+
+		try{
+			output.write("accuracy," + observed + "\n");
+			output.write("permutations," + permuted.length + "\n");
+			if(permuted.length > 0){
+				System.out.println("p-value: " + p + " (" + asGood + " of "
+								   + permuted.length
+								   + " permutations did as well)");
+				output.write("p," + p + "\n");
+			}
+			output.write("bootstrap," + resampled.length + "\n");
+			if(resampled.length > 0){
+				double lower = percentile(resampled, (1.0 - CONFIDENCE) / 2);
+				double upper = percentile(resampled, (1.0 + CONFIDENCE) / 2);
+				System.out.println((int) (CONFIDENCE * 100)
+								   + "% confidence interval: " + lower * 100
+								   + "% to " + upper * 100 + "%");
+				output.write("lower," + lower + "\n");
+				output.write("upper," + upper + "\n");
+			}
+		}
+		finally{
+			output.close();
+		}
+	}
+
+	/**
+	 * Boosts and scores with the labels of the days shuffled, within the
+	 * window only.
+	 */
+	private double permutation(Random random){
+		byte[] labels = all.getLabels().clone();
+		byte[] shuffled = directions.clone();
+		for(int ex = windowEnd - 1; ex > windowStart; ex--){
+			int swap = windowStart + random.nextInt(ex - windowStart + 1);
+			byte label = labels[ex];
+			labels[ex] = labels[swap];
+			labels[swap] = label;
+			byte direction = shuffled[ex];
+			shuffled[ex] = shuffled[swap];
+			shuffled[swap] = direction;
+		}
+		return replicate(labels, shuffled, null);
+	}
+
+	/**
+	 * Boosts and scores with the days of the window resampled in blocks,
+	 * wrapping around at the end so every day is as likely to be drawn.
+	 */
+	private double resample(Random random, int block){
+		int days = windowEnd - windowStart;
+		double[] counts = new double[all.getLabels().length];
+		for(int drawn = 0; drawn < days; ){
+			int start = random.nextInt(days);
+			for(int d = 0; d < block && drawn < days; d++, drawn++){
+				counts[windowStart + (start + d) % days]++;
+			}
+		}
+		return replicate(all.getLabels(), directions, counts);
+	}
+
+	/**
+	 * Boosts over the predictions with the given labels, the same way Learn
+	 * does, and scores the heaviest stumps the same way TestTraining and
+	 * TestAgainstTraining do.
+	 *
+	 * @param labels     The labels to boost with, for every day.
+	 * @param directions The movements to score against, for every day.
+	 * @param counts     How many times each day was drawn, or null for each
+	 *                   once.
+	 * @return The fraction of the window called correctly.
+	 */
+	private double replicate(byte[] labels, byte[] directions,
+							 double[] counts){
+		PredictionTable relabeled = all.withLabels(labels);
+		PredictionTable training = learn.getTraining(relabeled);
+		PredictionTable validation = learn.getValidation(relabeled);
+		EarlyStopping monitor;
+		if(validation.getExampleCount() > 0){
+			monitor = new EarlyStopping(validation, options.patience);
+		}
+		else{
+			monitor = new EarlyStopping(training, 0);
+		}
+		double[] examples = null;
+		if(counts != null){
+			examples = new double[training.getExampleCount()];
+			System.arraycopy(counts, training.getOffset(), examples, 0,
+							 examples.length);
+		}
+
+		Booster booster = options.createBooster();
+		booster.init(training, startWeights, examples);
+		monitor.start(booster.getHypothesisWeights(),
+					  booster.getHypothesisBiases());
+		for(int iterations = 0; iterations < options.rounds; iterations++){
+			int model = booster.round();
+			if(model < 0){
+				monitor.degenerate();
+				break;
+			}
+			if(monitor.update(model, booster.getHypothesisWeights(),
+							   booster.getHypothesisBiases())){
+				break;
+			}
+		}
+		double[] weights = monitor.getBestWeights();
+		double[] biases = monitor.getBestBiases();
+
+		double correct = 0.0;
+		double total = 0.0;
+		int[] best = heaviest(weights);
+		for(int ex = windowStart; ex < windowEnd; ex++){
+			double count = counts == null ? 1.0 : counts[ex];
+			double vote = 0.0;
+			for(int h : best){
+				int p = all.getPredictions(h)[ex];
+				vote += p * weights[h] + p * p * biases[h];
+			}
+			if(vote * directions[ex] > 0){
+				correct += count;
+			}
+			total += count;
+		}
+		return correct / total;
+	}
+
+	/**
+	 * @param weights The weight of every Hypothesis.
+	 * @return The heaviest of them, heaviest first. Ties go to the earlier
+	 *         Hypothesis, as they do in TestTraining.
+	 */
+	private int[] heaviest(double[] weights){
+		int[] best = new int[Math.min(stumps, weights.length)];
+		int found = 0;
+		for(int h = 0; h < weights.length; h++){
+			int at = found;
+			while(at > 0 && weights[best[at - 1]] < weights[h]){
+				at--;
+			}
+			if(at == best.length){
+				continue;
+			}
+			int moved = Math.min(found, best.length - 1) - at;
+			System.arraycopy(best, at, best, at + 1, moved);
+			best[at] = h;
+			found = Math.min(found + 1, best.length);
+		}
+		return best;
+	}
+
+	private static double[] collect(ArrayList<Future<Double>> futures){
+		double[] results = new double[futures.size()];
+		for(int r = 0; r < results.length; r++){
+			try{
+				results[r] = futures.get(r).get();
+			}
+			catch(InterruptedException e){
+				throw new IllegalStateException(e);
+			}
+			catch(ExecutionException e){
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * @param sorted Some values, in ascending order.
+	 * @param q      The fraction of values to fall at or below the result.
+	 * @return The smallest value with at least q of them at or below it.
+	 */
+	private static double percentile(double[] sorted, double q){
+		int rank = (int) Math.ceil(q * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+	}
+}
@@ -0,0 +1,422 @@
+import java.io.*;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Scanner;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Generates market data in the same formats as market_data.txt and
+ * nasdaq_data.csv, of whatever size is needed to test how the programs scale.
+ * The same seed always generates the same data.
+ * <p/>
+ * Each day has a market-wide factor that the NASDAQ and every stock follow to
+ * a degree, plus a factor shared by each sector of five stocks, plus noise
+ * of their own. How strongly each stock follows the market varies around the
+ * correlation asked for. The first 30 stocks are the DJ30, so Learn will use
+ * them, and any more are given made-up symbols that Learn will filter out.
+ * <p/>
+ * The files are written to synthetic/ unless told otherwise, and existing
+ * files are only replaced given -force, so the real data in input/ isn't
+ * overwritten by accident.
+ */
+public class SyntheticMarket{
+
+	private static final String USAGE =
+			"Usage: java SyntheticMarket [-symbols N] [-years N] [-seed N]\n"
+			+ "                            [-correlation R] [-sector R]\n"
+			+ "                            [-malformed RATE] [-out DIR] "
+			+ "[-force]\n"
+			+ "                            [-stream [Learn options...]]";
+
+	// Where the files are written unless given -out.
+	private static final String DEFAULT_OUT = "synthetic";
+
+	private static final String[] DJ30 = {"MMM", "AA", "AXP", "T", "BAC",
+										  "BA", "CAT", "CVX", "CSCO", "KO",
+										  "DD", "XOM", "GE", "HPQ", "HD",
+										  "INTC", "IBM", "JNJ", "JPM", "MCD",
+										  "MRK", "MSFT", "PFE", "PG", "TRV",
+										  "UNH", "UTX", "VZ", "WMT", "DIS"};
+
+	// The number of stocks sharing each sector factor.
+	private static final int SECTOR_SIZE = 5;
+
+	// Typical daily volatility of the NASDAQ and of a single stock.
+	private static final double INDEX_VOLATILITY = 0.012;
+	private static final double STOCK_VOLATILITY = 0.018;
+
+	// The NASDAQ's daily volume, kept below Integer.MAX_VALUE as
+	// TestAgainstTraining reads it as an int.
+	private static final long INDEX_VOLUME = 1000000000L;
+	private static final double INDEX_VOLUME_RANGE = 1.1e9;
+
+	private String[] symbols;
+	private int days;
+	private double malformed;
+	private Random random;
+
+	/*
+	 * How strongly each stock follows the market, and the sector factor.
+	 */
+	private double[] loadings;
+	private double sectorLoading;
+
+	/*
+	 * The closing price of each stock, and the NASDAQ, on the last day.
+	 */
+	private double[] closes;
+	private double indexClose;
+
+	private int day;
+	private GregorianCalendar date;
+
+	/**
+	 * @param symbols     The number of stocks, at least 30 to include the
+	 *                    whole DJ30.
+	 * @param years       The number of years of trading days.
+	 * @param correlation How strongly, on average, stocks follow the market.
+	 * @param sector      How strongly stocks follow their sector.
+	 * @param malformed   The fraction of lines to garble.
+	 * @param seed        Seeds the generator.
+	 */
+	public SyntheticMarket(int symbols, int years, double correlation,
+						   double sector, double malformed, long seed){
+		this.symbols = new String[symbols];
+		for(int s = 0; s < symbols; s++){
+			this.symbols[s] = s < DJ30.length ? DJ30[s]
+											  : String.format("S%05d", s);
+		}
+		days = years * 252;
+		this.malformed = malformed;
+		random = new Random(seed);
+
+		// Spread each stock's loading around the correlation, leaving room
+		// for the sector factor and some noise of its own
+		sectorLoading = sector;
+		loadings = new double[symbols];
+		closes = new double[symbols];
+		double most = Math.sqrt(Math.max(0.0, 1.0 - sector * sector));
+		for(int s = 0; s < symbols; s++){
+			double loading = correlation * (0.5 + random.nextDouble());
+			loadings[s] = Math.max(-most, Math.min(most, loading));
+			closes[s] = 10 + random.nextDouble() * 90;
+		}
+		indexClose = 2000.0;
+		date = new GregorianCalendar(2000, Calendar.JANUARY, 3);
+	}
+
+	public static void main(String[] args){
+		int symbols = 30, years = 1;
+		double correlation = 0.6, sector = 0.3, malformed = 0.0;
+		long seed = 1;
+		String out = DEFAULT_OUT;
+		boolean force = false;
+		String[] learnArgs = null;
+		try{
+			for(int i = 0; i < args.length; i++){
+				if(args[i].equals("-stream")){
+					learnArgs = new String[args.length - i - 1];
+					System.arraycopy(args, i + 1, learnArgs, 0,
+									 learnArgs.length);
+					break;
+				}
+				if(args[i].equals("-force")){
+					force = true;
+					continue;
+				}
+				if(i + 1 == args.length){
+					throw new IllegalArgumentException("Missing value for "
+													   + args[i]);
+				}
+				String value = args[++i];
+				if(args[i - 1].equals("-symbols")){
+					symbols = Integer.parseInt(value);
+				}
+				else if(args[i - 1].equals("-years")){
+					years = Integer.parseInt(value);
+				}
+				else if(args[i - 1].equals("-seed")){
+					seed = Long.parseLong(value);
+				}
+				else if(args[i - 1].equals("-correlation")){
+					correlation = Double.parseDouble(value);
+				}
+				else if(args[i - 1].equals("-sector")){
+					sector = Double.parseDouble(value);
+				}
+				else if(args[i - 1].equals("-malformed")){
+					malformed = Double.parseDouble(value);
+				}
+				else if(args[i - 1].equals("-out")){
+					out = value;
+				}
+				else{
+					throw new IllegalArgumentException("Unknown option "
+													   + args[i - 1]);
+				}
+			}
+			if(symbols < DJ30.length){
+				throw new IllegalArgumentException("At least " + DJ30.length
+												   + " symbols are needed");
+			}
+			if(years < 1){
+				throw new IllegalArgumentException("At least a year is "
+												   + "needed");
+			}
+			if(malformed < 0.0 || malformed > 1.0){
+				throw new IllegalArgumentException("The malformed rate must "
+												   + "be between 0 and 1");
+			}
+		}
+		catch(NumberFormatException e){
+			System.err.println("Bad number: " + e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		catch(IllegalArgumentException e){
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+
+		if(learnArgs != null){
+			stream(symbols, years, correlation, sector, malformed, seed,
+				   learnArgs);
+			return;
+		}
+
+		String marketPath = out + File.separator + "market_data.txt";
+		String nasdaqPath = out + File.separator + "nasdaq_data.csv";
+		if(!force && (new File(marketPath).exists()
+					  || new File(nasdaqPath).exists())){
+			System.err.println("'" + out + "' already has market data, give "
+							   + "-force to replace it! Exiting...");
+			System.exit(1);
+		}
+		new File(out).mkdirs();
+		System.out.println("Writing '" + marketPath + "' and '" + nasdaqPath
+						   + "'...");
+		try{
+			new SyntheticMarket(symbols, years, correlation, sector, malformed,
+								seed).write(marketPath, nasdaqPath);
+		}
+		catch(IOException e){
+			System.err.println("Unable to write market data! Exiting...");
+			System.exit(1);
+		}
+		System.out.println("Complete!");
+	}
+
+	/**
+	 * Runs Learn directly on generated data, without writing it out first.
+	 * Predictions aren't cached, since the cache is keyed on the input files.
+	 */
+	private static void stream(int symbols, int years, double correlation,
+							   double sector, double malformed, long seed,
+							   String[] learnArgs){
+		LearnOptions options = null;
+		BufferedWriter output = null;
+		try{
+			options = LearnOptions.parse(learnArgs);
+			options.cache = null;
+			output = new BufferedWriter(new FileWriter(Learn.OUTPUT_PATH));
+		}
+		catch(IllegalArgumentException e){
+			System.err.println(e.getMessage());
+			System.err.println(LearnOptions.USAGE);
+			System.exit(1);
+		}
+		catch(IOException e){
+			System.err.println("Unable to open output file for processing! " +
+							   "Exiting...");
+			System.exit(1);
+		}
+		if(options.workers != null){
+			System.err.println("Workers can't read streamed data! Exiting...");
+			System.exit(1);
+		}
+		System.out.println("Streaming into Learn...");
+		try{
+			new Learn(new Scanner(new SyntheticMarket(
+					symbols, years, correlation, sector, malformed, seed)
+										  .reader(true)),
+					  new Scanner(new SyntheticMarket(
+							  symbols, years, correlation, sector, malformed,
+							  seed).reader(false)),
+					  output, options);
+		}
+		catch(IllegalArgumentException e){
+			System.err.println(e.getMessage() + "! Exiting...");
+			System.exit(1);
+		}
+		System.out.println("Complete!");
+	}
+
+	/**
+	 * Writes every day out. The NASDAQ file is written newest day first, as
+	 * the real one is.
+	 *
+	 * @param marketPath Where to write the stock data.
+	 * @param nasdaqPath Where to write the NASDAQ data.
+	 * @throws IOException If either file couldn't be written.
+	 */
+	public void write(String marketPath, String nasdaqPath) throws IOException{
+		BufferedWriter market = new BufferedWriter(new FileWriter(marketPath));
+		String[] nasdaq = new String[days];
+		StringBuilder stockLines = new StringBuilder();
+		StringBuilder indexLine = new StringBuilder();
+		try{
+			while(nextDay(stockLines, indexLine)){
+				market.append(stockLines);
+				nasdaq[day - 1] = indexLine.toString();
+				stockLines.setLength(0);
+				indexLine.setLength(0);
+			}
+		}
+		finally{
+			market.close();
+		}
+
+		BufferedWriter index = new BufferedWriter(new FileWriter(nasdaqPath));
+		try{
+			for(int d = days - 1; d >= 0; d--){
+				index.write(nasdaq[d]);
+			}
+		}
+		finally{
+			index.close();
+		}
+	}
+
+	/**
+	 * @param stocks True to read the stock data, false for the NASDAQ.
+	 * @return The data as it would be read from file, generated as it is read.
+	 *         The NASDAQ is read oldest day first.
+	 */
+	public Reader reader(final boolean stocks){
+		return new Reader(){
+			private StringBuilder buffer = new StringBuilder();
+			private int position;
+
+			public int read(char[] chars, int off, int len){
+				while(position == buffer.length()){
+					buffer.setLength(0);
+					position = 0;
+					if(!nextDay(stocks ? buffer : null,
+								stocks ? null : buffer)){
+						return -1;
+					}
+				}
+				int read = Math.min(len, buffer.length() - position);
+				buffer.getChars(position, position + read, chars, off);
+				position += read;
+				return read;
+			}
+
+			public void close(){
+			}
+		};
+	}
+
+	/**
+	 * Generates the next trading day. The same random numbers are drawn
+	 * whichever lines are asked for, so the stock data and NASDAQ always
+	 * agree for the same seed.
+	 *
+	 * @param stocks Where to append the stock lines, or null to skip them.
+	 * @param index  Where to append the NASDAQ line, or null to skip it.
+	 * @return False if there are no more days.
+	 */
+	public boolean nextDay(StringBuilder stocks, StringBuilder index){
+		if(day == days){
+			return false;
+		}
+		String today = String.format(Locale.US, "%04d%02d%02d",
+									 date.get(Calendar.YEAR),
+									 date.get(Calendar.MONTH) + 1,
+									 date.get(Calendar.DAY_OF_MONTH));
+		double market = random.nextGaussian();
+		double[] sectors = new double[(symbols.length + SECTOR_SIZE - 1)
+									  / SECTOR_SIZE];
+		for(int s = 0; s < sectors.length; s++){
+			sectors[s] = random.nextGaussian();
+		}
+
+		for(int s = 0; s < symbols.length; s++){
+			double own = Math.sqrt(Math.max(0.0, 1.0 - loadings[s] * loadings[s]
+													 - sectorLoading
+													   * sectorLoading));
+			double move = STOCK_VOLATILITY
+						  * (loadings[s] * market
+							 + sectorLoading * sectors[s / SECTOR_SIZE]
+							 + own * random.nextGaussian());
+			double open = closes[s] * (1 + 0.002 * random.nextGaussian());
+			closes[s] = open * (1 + move);
+			long volume = 100000 + (long) (random.nextDouble() * 5000000);
+			String line = today + "," + symbols[s] + ","
+						  + bar(open, closes[s], false) + "," + volume;
+			line = garble(line);
+			if(stocks != null){
+				stocks.append(line).append('\n');
+			}
+		}
+
+		double move = INDEX_VOLATILITY
+					  * (0.9 * market + 0.436 * random.nextGaussian());
+		double open = indexClose * (1 + 0.002 * random.nextGaussian());
+		indexClose = open * (1 + move);
+		long volume = INDEX_VOLUME
+					  + (long) (random.nextDouble() * INDEX_VOLUME_RANGE);
+		String line = today + "," + bar(open, indexClose, true) + ","
+					  + volume + ","
+					  + String.format(Locale.US, "%.2f", indexClose);
+		line = garble(line);
+		if(index != null){
+			index.append(line).append('\n');
+		}
+
+		day++;
+		do{
+			date.add(Calendar.DAY_OF_MONTH, 1);
+		}
+		while(date.get(Calendar.DAY_OF_WEEK) == Calendar.SATURDAY
+			  || date.get(Calendar.DAY_OF_WEEK) == Calendar.SUNDAY);
+		return true;
+	}
+
+	/**
+	 * @return OPEN,HIGH,LOW,CLOSE for a day, with the high and low a little
+	 *         outside of the open and close.
+	 */
+	private String bar(double open, double close, boolean index){
+		double high = Math.max(open, close)
+					  * (1 + 0.004 * Math.abs(random.nextGaussian()));
+		double low = Math.min(open, close)
+					 * (1 - 0.004 * Math.abs(random.nextGaussian()));
+		String format = index ? "%.2f" : "%.4f";
+		return String.format(Locale.US, format + "," + format + "," + format
+										+ "," + format, open, high, low, close);
+	}
+
+	/**
+	 * @return The line, or at the malformed rate, a garbled version of it of
+	 *         the kinds the parsers are meant to discard.
+	 */
+	private String garble(String line){
+		double roll = random.nextDouble();
+		int kind = random.nextInt(3);
+		if(roll >= malformed){
+			return line;
+		}
+		if(kind == 0){
+			return line.substring(0, line.lastIndexOf(','));
+		}
+		else if(kind == 1){
+			return line.replaceFirst(",[0-9.]+,", ",n/a,");
+		}
+		return "#corrupt#" + line.hashCode();
+	}
+}
@@ -1,9 +1,6 @@
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Scanner;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Author:      Grant Kurtz
@@ -27,44 +24,171 @@ public class TestAgainstTraining{
 	private static final String STUMP_PATH = STUMP_DIR + File.separator +
 											 STUMP_FILE;
 
+	// Every stump Learn produced, for evaluating each prefix of them.
+	private static final String ALL_STUMPS_FILE = "stumps.txt";
+	private static final String ALL_STUMPS_PATH = STUMP_DIR + File.separator +
+												  ALL_STUMPS_FILE;
+
+	// The accuracy of each prefix of the stumps, best first.
+	private static final String CURVE_FILE = "prefix_curve.txt";
+	private static final String CURVE_PATH = STUMP_DIR + File.separator +
+											 CURVE_FILE;
+
 	private HashMap<String, HashMap<String, ModelData>> stocks;
 	private HashSet<String> filter;
 	private ArrayList<Example> nasdaq;
 
 	public static void main(String[] args){
+		String from = null;
+		String to = null;
+		boolean curve = false;
+		String cache = null;
+		boolean valid = true;
+		for(int i = 0; i < args.length; i++){
+			if(args[i].equals("-curve")){
+				curve = true;
+			}
+			else if(args[i].equals("-cache") && i + 1 < args.length){
+				cache = args[++i];
+			}
+			else if(args[i].equals("-nocache")){
+				cache = null;
+			}
+			else if(args[i].equals("-from") && i + 1 < args.length){
+				from = args[++i];
+			}
+			else if(args[i].equals("-to") && i + 1 < args.length){
+				to = args[++i];
+			}
+			else{
+				valid = false;
+			}
+		}
+		if(!valid){
+			System.err.println("Usage: java TestAgainstTraining [-curve] "
+							   + "[-cache DIR] [-nocache] "
+							   + "[-from YYYY-MM-DD] [-to YYYY-MM-DD]");
+			System.exit(1);
+		}
 		Scanner input = null;
 		Scanner nasdaqInput = null;
 		Scanner stumps = null;
+		BufferedWriter output = null;
 
 		// Make sure we get all the file handles we need before we get
 		// started doing the heavy-lifting, no need to have the user wait for
 		// several seconds before they know we can't read/write to a needed
 		// file!
 		try{
-			input = new Scanner(new File(INPUT_PATH));
-			nasdaqInput = new Scanner(new File(NASDAQ_PATH));
-			stumps = new Scanner(new File(STUMP_PATH));
+			input = MarketInput.open(INPUT_PATH);
+			nasdaqInput = MarketInput.open(NASDAQ_PATH);
+			stumps = new Scanner(new File(curve ? ALL_STUMPS_PATH
+												: STUMP_PATH));
+			if(curve){
+				output = new BufferedWriter(new FileWriter(CURVE_PATH));
+			}
 		}
 		catch(FileNotFoundException e){
 			System.err.println("Unable to open file for processing! " +
 							   "Exiting...");
 			System.exit(1);
 		}
+		catch(IOException e){
+			System.err.println("Unable to open output file for processing! " +
+							   "Exiting...");
+			System.exit(1);
+		}
 
-		new TestAgainstTraining(input, nasdaqInput, stumps);
+		try{
+			new TestAgainstTraining(input, nasdaqInput, stumps, from, to,
+									output, cache);
+		}
+		catch(IllegalArgumentException e){
+			System.err.println(e.getMessage() + "! Exiting...");
+			System.exit(1);
+		}
+		catch(IllegalStateException e){
+			// A compressed input file was corrupt
+			System.err.println(e.getMessage() + "! Exiting...");
+			System.exit(1);
+		}
+		catch(IOException e){
+			System.err.println("Something happened while writing! Exiting...");
+			System.exit(1);
+		}
 	}
 
+	/**
+	 * Tests the best stumps against the days between from and to, or every
+	 * day if neither are given.
+	 * <p/>
+	 * Given a curve to write, the stumps are instead taken in order of weight,
+	 * and the accuracy of the best K of them is found for every K at once.
+	 * <p/>
+	 * Given the cache Learn was run with, the predictions Learn already
+	 * evaluated are voted with rather than looking up each day's movements
+	 * again.
+	 *
+	 * @param cache Where predictions are cached, as given to Learn with
+	 *              -cache, or null to not use a cache.
+	 */
 	public TestAgainstTraining(Scanner input, Scanner nasdaqInput,
-							   Scanner stumps){
+							   Scanner stumps, String from, String to,
+							   BufferedWriter curve, String cache)
+			throws IOException{
 		setupFilter();
 		processNASDAQ(nasdaqInput);
 		processDowJones(input);
 		ArrayList<Hypothesis> hypothesis = readHypothesis(stumps, stocks);
+		if(curve != null){
+			sortByWeight(hypothesis);
+		}
+		TradingCalendar.sort(nasdaq);
+		int[] window = new TradingCalendar(nasdaq).window(from, to);
+		if(window[0] == window[1]){
+			throw new IllegalArgumentException("No days to test on in the "
+											   + "window asked for");
+		}
+
+		// Predictions for stumps Learn (or an earlier run) already evaluated
+		// on this data are read back from the cache
+		PredictionTable table = null;
+		if(cache != null){
+			try{
+				table = PredictionTable.build(hypothesis, nasdaq,
+						new PredictionCache(new File(cache),
+											PredictionCache.fingerprint(
+													INPUT_PATH, NASDAQ_PATH),
+											nasdaq));
+			}
+			catch(IOException e){
+				System.err.println("Unable to fingerprint input files, not "
+								   + "caching predictions!");
+			}
+		}
+		if(curve != null){
+			if(table == null){
+				table = PredictionTable.build(hypothesis, nasdaq);
+			}
+			writeCurve(curve, prefixCurve(table, hypothesis, window[0],
+										  window[1]), window[1] - window[0]);
+			return;
+		}
+
+		// Each day is only looked up once, after that the vote is a loop
+		// over the compiled ensemble's arrays
+		CompiledEnsemble ensemble = CompiledEnsemble.compile(hypothesis);
+		byte[] moves = ensemble.newMovementVector();
 		double correct = 0.0;
-		for(Example ex : nasdaq){
-			double vote = 0.0;
-			for(Hypothesis h : hypothesis){
-				vote += h.prediction(ex) * h.getWeight();
+		for(int e = window[0]; e < window[1]; e++){
+			Example ex = nasdaq.get(e);
+			double vote;
+			if(table != null){
+				vote = ensemble.score(table, e);
+			}
+			else{
+				ensemble.loadDay(stocks.get(ex.date), moves);
+				vote = ensemble.score(moves);
 			}
 			if(vote > 0 && ex.close > ex.open){
 				correct += 1.0;
@@ -73,7 +197,123 @@ public class TestAgainstTraining{
 				correct += 1.0;
 			}
 		}
-		System.out.println("Percent Correct: " + correct / nasdaq.size() * 100 + "%");
+		System.out.println("Percent Correct: "
+						   + correct / (window[1] - window[0]) * 100 + "%");
+	}
+
+	/**
+	 * Counts the days each prefix of the stumps gets right. The days are split
+	 * between cores, each keeping a running vote per day as stumps are added
+	 * one at a time, so every prefix is evaluated in a single pass.
+	 *
+	 * @param table      The predictions of each stump.
+	 * @param hypothesis The stumps, in the order they are added to the vote.
+	 * @param start      The first day to test on.
+	 * @param end        The day after the last to test on.
+	 * @return The number of days right with the first K stumps voting, at
+	 *         index K - 1.
+	 */
+	private int[] prefixCurve(final PredictionTable table,
+							  ArrayList<Hypothesis> hypothesis, int start,
+							  int end){
+		final double[] weights = new double[hypothesis.size()];
+		final double[] biases = new double[hypothesis.size()];
+		for(int h = 0; h < weights.length; h++){
+			weights[h] = hypothesis.get(h).getWeight();
+			biases[h] = hypothesis.get(h).getBias();
+		}
+
+		// Flat days can't be called correctly either way
+		final byte[] directions = new byte[end - start];
+		for(int e = start; e < end; e++){
+			Example ex = nasdaq.get(e);
+			directions[e - start] = (byte) (ex.close > ex.open ? 1
+											: ex.open > ex.close ? -1 : 0);
+		}
+
+		final int offset = start;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int chunk = (directions.length + threads - 1) / threads;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ArrayList<Future<int[]>> parts = new ArrayList<Future<int[]>>();
+		for(int first = start; first < end; first += chunk){
+			final int from = first;
+			final int to = Math.min(end, first + chunk);
+			parts.add(pool.submit(new Callable<int[]>(){
+				public int[] call(){
+					int[] correct = new int[weights.length];
+					double[] votes = new double[to - from];
+					for(int h = 0; h < weights.length; h++){
+						byte[] pred = table.getPredictions(h);
+						int right = 0;
+						for(int e = from; e < to; e++){
+							votes[e - from] += pred[e] * weights[h]
+											   + pred[e] * pred[e] * biases[h];
+							if(votes[e - from] * directions[e - offset] > 0){
+								right++;
+							}
+						}
+						correct[h] = right;
+					}
+					return correct;
+				}
+			}));
+		}
+
+		int[] correct = new int[weights.length];
+		try{
+			for(Future<int[]> part : parts){
+				int[] counts = part.get();
+				for(int h = 0; h < correct.length; h++){
+					correct[h] += counts[h];
+				}
+			}
+		}
+		catch(InterruptedException e){
+			throw new IllegalStateException("Interrupted while testing", e);
+		}
+		catch(ExecutionException e){
+			throw new IllegalStateException("Testing failed", e.getCause());
+		}
+		finally{
+			pool.shutdown();
+		}
+		return correct;
+	}
+
+	/**
+	 * Writes the accuracy of each prefix of the stumps, and prints the best.
+	 *
+	 * @param output  The file handler to output the curve to.
+	 * @param correct The number of days right with each prefix.
+	 * @param days    The number of days tested on.
+	 * @throws IOException If the curve couldn't be written.
+	 */
+	private void writeCurve(BufferedWriter output, int[] correct, int days)
+			throws IOException{
+		int best = 0;
+		for(int k = 1; k < correct.length; k++){
+			if(correct[k] > correct[best]){
+				best = k;
+			}
+		}
+		try{
+			if(correct.length > 0){
+				output.write("# best k=" + (best + 1) + "\n");
+			}
+			output.write("k,accuracy\n");
+			for(int k = 0; k < correct.length; k++){
+				output.write((k + 1) + "," + (double) correct[k] / days + "\n");
+			}
+		}
+		finally{
+			output.close();
+		}
+		if(correct.length > 0){
+			System.out.println("Best Stumps: " + (best + 1) + " ("
+							   + (double) correct[best] / days * 100
+							   + "% Correct)");
+		}
 	}
 
 	/**
@@ -236,4 +476,18 @@ public class TestAgainstTraining{
 		}
 		return hypothesis;
 	}
+
+	/**
+	 * Orders the Hypothesis by weight, heaviest first, as TestTraining picks
+	 * them. Hypothesis of equal weight keep their order.
+	 *
+	 * @param hypothesis The Hypothesis to sort.
+	 */
+	private void sortByWeight(ArrayList<Hypothesis> hypothesis){
+		Collections.sort(hypothesis, new Comparator<Hypothesis>(){
+			public int compare(Hypothesis a, Hypothesis b){
+				return Double.compare(b.getWeight(), a.getWeight());
+			}
+		});
+	}
 }
@@ -1,6 +1,10 @@
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Scanner;
 
@@ -12,6 +16,14 @@ import java.util.Scanner;
  * Hypothesis is given a vote equal to its weight. A prediction for "Up" is
  * given if the total votes cast is greater than 0.0.  Likewise, the prediction
  * is "Down" if the total votes cast is less than 0.0.
+ * <p/>
+ * The day predicted is the date most lines of the file are for, or the one
+ * picked with -date. Lines for any other date are ignored, with a warning.
+ * <p/>
+ * Given several days, or asked to repeat, each is predicted in turn. With
+ * -latency, the time spent parsing the day, loading the stumps and scoring is
+ * recorded for every prediction, and written out at the end as text, or as
+ * JSON if the file name ends in ".json".
  */
 public class TestOneDay{
 
@@ -21,45 +33,159 @@ public class TestOneDay{
 	private static final String STUMP_PATH = STUMP_DIR + File.separator +
 											 STUMP_FILE;
 
+	private static final String USAGE = "Usage: java TestOneDay "
+										+ "[-latency FILE] [-repeat N] "
+										+ "[-date YYYYMMDD] input_file...";
+
+	// The stages of a prediction timed with -latency.
+	public static final int PARSE = 0;
+	public static final int LOAD = 1;
+	public static final int SCORE = 2;
+	public static final String[] STAGES = {"parse", "load", "score"};
+
+	// The date predicted, as it appears in the market data.
+	private String day;
+
+	// The votes cast for "Up", and the most that could have been.
+	private double vote;
+	private double totalWeight;
+
 	public static void main(String[] args){
-		if(args.length != 1){
-			System.err.println("Usage: java TestOneDay input_file");
+		String latencyFile = null;
+		String date = null;
+		int repeat = 1;
+		ArrayList<String> inputFiles = new ArrayList<String>();
+		try{
+			for(int i = 0; i < args.length; i++){
+				if(args[i].equals("-latency") && i + 1 < args.length){
+					latencyFile = args[++i];
+				}
+				else if(args[i].equals("-repeat") && i + 1 < args.length){
+					repeat = Integer.parseInt(args[++i]);
+				}
+				else if(args[i].equals("-date") && i + 1 < args.length){
+					date = args[++i];
+				}
+				else{
+					inputFiles.add(args[i]);
+				}
+			}
+		}
+		catch(NumberFormatException e){
+			inputFiles.clear();
+		}
+		if(inputFiles.isEmpty() || repeat < 1){
+			System.err.println(USAGE);
 			System.exit(1);
 		}
-		String inputFile = args[0];
+
+		// Open the latency report first, no need to predict every day before
+		// finding out it can't be written
+		LatencyRecorder recorder = null;
+		BufferedWriter latency = null;
+		if(latencyFile != null){
+			try{
+				latency = new BufferedWriter(new FileWriter(latencyFile));
+			}
+			catch(IOException e){
+				System.err.println("Unable to open output file for "
+								   + "processing! Exiting...");
+				System.exit(1);
+			}
+			recorder = new LatencyRecorder(STAGES);
+		}
 
 		// Open file handlers, give up if we can't for any reason
 		System.out.println("Looking for input file '" + STUMP_PATH + "'...");
-		System.out.println("Looking for input file '" + inputFile + "'...");
-		Scanner input = null;
-		Scanner stumps = null;
-		try{
-			input = new Scanner(new File(inputFile));
-			stumps = new Scanner(new File(STUMP_PATH));
-		}
-		catch(FileNotFoundException e){
-			System.err.println("Unable to open input files! Exiting...");
+		for(int r = 0; r < repeat; r++){
+			for(String inputFile : inputFiles){
+				if(r == 0){
+					System.out.println("Looking for input file '" + inputFile
+									   + "'...");
+				}
+				Scanner input = null;
+				Scanner stumps = null;
+				try{
+					input = MarketInput.open(inputFile);
+					stumps = new Scanner(new File(STUMP_PATH));
+				}
+				catch(FileNotFoundException e){
+					System.err.println("Unable to open input files! "
+									   + "Exiting...");
+					System.exit(1);
+				}
+				try{
+					new TestOneDay(input, stumps, recorder, date);
+				}
+				catch(IllegalArgumentException e){
+					System.err.println("'" + inputFile + "': "
+									   + e.getMessage() + "! Exiting...");
+					System.exit(1);
+				}
+				catch(IllegalStateException e){
+					// The day's file was compressed, and corrupt
+					System.err.println(e.getMessage() + "! Exiting...");
+					System.exit(1);
+				}
+				input.close();
+				stumps.close();
+			}
 		}
 
-		new TestOneDay(input, stumps);
+		if(latency != null){
+			try{
+				recorder.write(latency, latencyFile.endsWith(".json"));
+				latency.close();
+			}
+			catch(IOException e){
+				System.err.println("Unable to write latencies to file '"
+								   + latencyFile + "'! Exiting...");
+				System.exit(1);
+			}
+		}
 	}
 
 	public TestOneDay(Scanner input, Scanner stumps){
+		this(input, stumps, null, null);
+	}
+
+	/**
+	 * @param recorder Where to record how long each stage took, or null not
+	 *                 to.
+	 * @param date     The date to predict, as YYYYMMDD or YYYY-MM-DD, or null
+	 *                 for the date most of the input is for.
+	 * @throws IllegalArgumentException If the input has no days, or not the
+	 *                                  date given.
+	 */
+	public TestOneDay(Scanner input, Scanner stumps,
+					  LatencyRecorder recorder, String date){
 
 		// Read in all the stock data for today
+		long start = System.nanoTime();
 		HashMap<String, HashMap<String, ModelData>> stocks =
 				readStockDataForToday(input);
+		day = pickDay(stocks, date);
+		long parsed = System.nanoTime();
 
 		// Read our best stumps
 		ArrayList<Hypothesis> hypothesis = readHypothesis(stumps, stocks);
 
 		// Predict the result
-		// We just need a dummy example, it (shouldn't) be used by Hypothesis
-		// objects
-		Example ex = new Example("20091211", 0.0, 0.0, 0.0, 0.0, 0, 0.0);
-		double prediction = 0.0;
+		CompiledEnsemble ensemble = CompiledEnsemble.compile(hypothesis);
+		long loaded = System.nanoTime();
+		byte[] moves = ensemble.newMovementVector();
+		ensemble.loadDay(stocks.get(day), moves);
+		double prediction = ensemble.score(moves);
+		long scored = System.nanoTime();
+		vote = prediction;
 		for(Hypothesis h : hypothesis){
-			prediction += h.prediction(ex) * h.getWeight();
+			totalWeight += Math.abs(h.getWeight()) + Math.abs(h.getBias());
+		}
+		if(recorder != null){
+			recorder.record(PARSE, parsed - start);
+			recorder.record(LOAD, loaded - parsed);
+			recorder.record(SCORE, scored - loaded);
+			recorder.completed();
 		}
 		System.out.print("Prediction: ");
 
@@ -69,6 +195,69 @@ public class TestOneDay{
 		System.out.println( prediction > 0.0 ? "Up" : "Down");
 	}
 
+	/**
+	 * @return The date predicted, as YYYYMMDD.
+	 */
+	public String getDate(){
+		return day;
+	}
+
+	/**
+	 * @return 1 if the prediction was "Up", -1 if it was "Down".
+	 */
+	public int getPrediction(){
+		return vote > 0.0 ? 1 : -1;
+	}
+
+	/**
+	 * @return The votes cast for "Up" as a fraction of all the votes that
+	 *         could have been, from -1 (all "Down") to 1 (all "Up").
+	 */
+	public double getMargin(){
+		return totalWeight == 0.0 ? 0.0 : vote / totalWeight;
+	}
+
+	/**
+	 * Finds the day to predict in the market data read.
+	 *
+	 * @param stocks The market data, by date.
+	 * @param date   The date asked for, or null for the date with the most
+	 *               stocks (the latest, if several have as many).
+	 * @return The date, as it appears in the market data.
+	 * @throws IllegalArgumentException If there is no market data, or none for
+	 *                                  the date asked for.
+	 */
+	private static String pickDay(
+			HashMap<String, HashMap<String, ModelData>> stocks, String date){
+		if(stocks.isEmpty()){
+			throw new IllegalArgumentException("No market data");
+		}
+		ArrayList<String> dates = new ArrayList<String>(stocks.keySet());
+		Collections.sort(dates);
+		String day = null;
+		if(date != null){
+			day = date.replace("-", "");
+			if(stocks.get(day) == null){
+				throw new IllegalArgumentException("No market data for "
+												   + date);
+			}
+		}
+		else{
+			for(String d : dates){
+				if(day == null || stocks.get(d).size() >= stocks.get(day)
+						.size()){
+					day = d;
+				}
+			}
+		}
+		if(dates.size() > 1){
+			dates.remove(day);
+			System.err.println("Predicting " + day + ", ignoring the lines "
+							   + "for " + dates);
+		}
+		return day;
+	}
+
 	/**
 	 * Converts the stringified versions of the Hypothesis into their respective
 	 * implementations.
@@ -96,7 +96,8 @@ public class TestTraining{
 			// all the heavy processing of actually building the Hypothesis
 			// object since we are choosing the best MAX_STUMPS stumps based
 			// on the highest numerical weight.
-			double weight = Double.parseDouble(values[values.length - 1]);
+			double weight = Double.parseDouble(
+					values[HypothesisFactory.weightColumn(values)]);
 			insertIfBest(weight, line, hypothesisData, hypothesisWeight);
 		}
 
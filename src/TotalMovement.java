@@ -7,6 +7,7 @@ public class TotalMovement implements Hypothesis{
 
 	private static HashMap<String, HashMap<String, ModelData>> data = null;
 	private double weight;
+	private double bias;
 
 	public TotalMovement(HashMap<String, HashMap<String, ModelData>> data){
 		TotalMovement.data = data;
@@ -30,6 +31,14 @@ public class TotalMovement implements Hypothesis{
 		this.weight = weight;
 	}
 
+	public double getBias(){
+		return bias;
+	}
+
+	public void setBias(double bias){
+		this.bias = bias;
+	}
+
 	public String toString(){
 		return "TO";
 	}
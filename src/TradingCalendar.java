@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * The trading days of a market history, in order, each mapped to a dense
+ * position. Market data kept in the same order can then be sliced into
+ * windows of days just by position, so a window never copies the data it
+ * covers.
+ * <p/>
+ * Dates are given as YYYYMMDD, with or without dashes (2009-01-01 or
+ * 20090101). Days the market wasn't open have no position, see indexOf(),
+ * ceiling() and floor() for the ways of handling that.
+ */
+public class TradingCalendar{
+
+	/*
+	 * Each trading day as a YYYYMMDD number, in ascending order.
+	 */
+	private int[] dates;
+
+	/**
+	 * @param examples The trading days, in ascending order by date, with no
+	 *                 day repeated, as sort() leaves them.
+	 * @throws IllegalArgumentException If a day is out of order, repeated, or
+	 *                                  has an unparsable date.
+	 */
+	public TradingCalendar(ArrayList<Example> examples){
+		dates = new int[examples.size()];
+		for(int d = 0; d < dates.length; d++){
+			dates[d] = parse(examples.get(d).date);
+			if(d > 0 && dates[d] <= dates[d - 1]){
+				throw new IllegalArgumentException("Day " + dates[d]
+												   + " is out of order");
+			}
+		}
+	}
+
+	/**
+	 * Puts market data in ascending order by date, which the calendar (and any
+	 * window over it) expects. The NASDAQ file is in descending order.
+	 * <p/>
+	 * A day with a date that can't be parsed is dropped, as is any day after
+	 * the first (in the order given) with the same date as another, with a
+	 * warning for each.
+	 *
+	 * @param examples The days to sort.
+	 */
+	public static void sort(ArrayList<Example> examples){
+		Iterator<Example> days = examples.iterator();
+		while(days.hasNext()){
+			Example ex = days.next();
+			try{
+				parse(ex.date);
+			}
+			catch(IllegalArgumentException e){
+				System.err.println(e.getMessage() + ", skipping the day");
+				days.remove();
+			}
+		}
+
+		// The sort is stable, so the first of several days with the same
+		// date is still first afterwards
+		Collections.sort(examples, new Comparator<Example>(){
+			public int compare(Example a, Example b){
+				int x = parse(a.date);
+				int y = parse(b.date);
+				return x < y ? -1 : x > y ? 1 : 0;
+			}
+		});
+		int kept = 0;
+		for(int d = 0; d < examples.size(); d++){
+			Example ex = examples.get(d);
+			if(kept > 0 && parse(ex.date)
+							== parse(examples.get(kept - 1).date)){
+				System.err.println("Day " + ex.date + " is repeated, skipping "
+								   + "all but the first");
+				continue;
+			}
+			examples.set(kept++, ex);
+		}
+		examples.subList(kept, examples.size()).clear();
+	}
+
+	/**
+	 * @param date A date as YYYYMMDD or YYYY-MM-DD.
+	 * @return The date as a YYYYMMDD number.
+	 * @throws IllegalArgumentException If the date can't be parsed.
+	 */
+	public static int parse(String date){
+		String digits = date.replace("-", "");
+		if(digits.length() != 8){
+			throw new IllegalArgumentException("Bad date '" + date + "'");
+		}
+		try{
+			return Integer.parseInt(digits);
+		}
+		catch(NumberFormatException e){
+			throw new IllegalArgumentException("Bad date '" + date + "'");
+		}
+	}
+
+	/**
+	 * @param date A YYYYMMDD date.
+	 * @return The position of the date, or -1 if the market wasn't open.
+	 */
+	public int indexOf(int date){
+		int d = Arrays.binarySearch(dates, date);
+		return d >= 0 ? d : -1;
+	}
+
+	/**
+	 * @param date A YYYYMMDD date.
+	 * @return The position of the first trading day on or after the date, or
+	 *         size() if there is none.
+	 */
+	public int ceiling(int date){
+		int d = Arrays.binarySearch(dates, date);
+		return d >= 0 ? d : -(d + 1);
+	}
+
+	/**
+	 * @param date A YYYYMMDD date.
+	 * @return The position of the last trading day on or before the date, or
+	 *         -1 if there is none.
+	 */
+	public int floor(int date){
+		int d = Arrays.binarySearch(dates, date);
+		return d >= 0 ? d : -(d + 1) - 1;
+	}
+
+	/**
+	 * Finds the trading days between two dates. Either date may fall on a day
+	 * the market wasn't open, in which case the window starts on the next
+	 * trading day and ends on the previous one.
+	 *
+	 * @param from The first date, inclusive, or null for the first day.
+	 * @param to   The last date, inclusive, or null for the last day.
+	 * @return The positions {start, end} of the window, end exclusive. The
+	 *         window is empty (start == end) if no day falls between them.
+	 */
+	public int[] window(String from, String to){
+		int start = from == null ? 0 : ceiling(parse(from));
+		int end = to == null ? dates.length : floor(parse(to)) + 1;
+		return new int[]{start, Math.max(start, end)};
+	}
+
+	/**
+	 * @param d A position in the calendar.
+	 * @return The YYYYMMDD date of that day.
+	 */
+	public int getDate(int d){
+		return dates[d];
+	}
+
+	public int size(){
+		return dates.length;
+	}
+}
@@ -0,0 +1,55 @@
+import java.util.Arrays;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * Weight trimming, from Friedman, Hastie and Tibshirani's "Additive Logistic
+ * Regression". The lightest Examples are skipped, so long as together they
+ * hold no more than a small fraction of the total weight.
+ */
+public class WeightTrimming implements ExampleSampler{
+
+	// The most weight the skipped Examples may hold between them.
+	private double tail;
+
+	// Scratch space for finding the cut-off, reused every round.
+	private double[] sorted;
+
+	public WeightTrimming(double tail){
+		this.tail = tail;
+	}
+
+	public int sample(double[] weights, int[] rows, double[] scale){
+		if(sorted == null || sorted.length != weights.length){
+			sorted = new double[weights.length];
+		}
+		System.arraycopy(weights, 0, sorted, 0, weights.length);
+		Arrays.sort(sorted);
+
+		// Walk up from the lightest Example until the tail is used up,
+		// everything at or above that weight is kept
+		double total = 0.0;
+		for(double w : sorted){
+			total += w;
+		}
+		double skipped = 0.0;
+		double cutoff = sorted.length > 0 ? sorted[sorted.length - 1] : 0.0;
+		for(double w : sorted){
+			skipped += w;
+			if(skipped > tail * total){
+				cutoff = w;
+				break;
+			}
+		}
+
+		int count = 0;
+		for(int ex = 0; ex < weights.length; ex++){
+			if(weights[ex] >= cutoff){
+				rows[count] = ex;
+				scale[count] = 1.0;
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * The inner loop of choosing a model: the four sums of PredictionTable.sums()
+ * for a Hypothesis, each a weighted dot product of its predictions with the
+ * per-Example vectors a and b.
+ * <p/>
+ * Each loop is a straight pass over primitive arrays with no branches: a
+ * prediction of 0 simply adds nothing to the sums, rather than being skipped
+ * by a test the CPU would mispredict on every other day. There is a loop for
+ * each combination of vectors given, rather than one loop testing for them.
+ * Taking the branches out is where nearly all of the speed comes from. The
+ * JIT's vectorizer can only help with loading and converting the
+ * predictions, as Java never reorders floating point additions, so each sum
+ * is still added up one Example at a time, in Example order, and is
+ * bit-identical however the loop is compiled.
+ * <p/>
+ * The sampled loops gather their predictions through an index, but are
+ * otherwise the same.
+ */
+public class WeightedErrorKernel{
+
+	/**
+	 * The four sums over a window of Examples.
+	 *
+	 * @param pred   The predictions of the Hypothesis.
+	 * @param offset Where the window starts in pred.
+	 * @param a      The first per-Example vector.
+	 * @param b      The second per-Example vector, may be null, in which case
+	 *               out[2] and out[3] are left as 0.
+	 * @param length The number of Examples in the window.
+	 * @param out    Where to store the four sums.
+	 */
+	public static void sums(byte[] pred, int offset, double[] a, double[] b,
+							int length, double[] out){
+		double signedA = 0.0, coveredA = 0.0, signedB = 0.0, coveredB = 0.0;
+		if(b == null){
+			for(int ex = 0; ex < length; ex++){
+				int p = pred[offset + ex];
+
+				// 1 for a prediction of up or down, 0 for none
+				int c = p & 1;
+				signedA += p * a[ex];
+				coveredA += c * a[ex];
+			}
+		}
+		else{
+			for(int ex = 0; ex < length; ex++){
+				int p = pred[offset + ex];
+				int c = p & 1;
+				signedA += p * a[ex];
+				coveredA += c * a[ex];
+				signedB += p * b[ex];
+				coveredB += c * b[ex];
+			}
+		}
+		out[0] = signedA;
+		out[1] = coveredA;
+		out[2] = signedB;
+		out[3] = coveredB;
+	}
+
+	/**
+	 * The four sums over a sample of Examples.
+	 *
+	 * @param pred   The predictions of the Hypothesis.
+	 * @param offset Where the Examples start in pred.
+	 * @param a      The first vector, for each sampled Example.
+	 * @param b      The second vector, for each sampled Example, may be null.
+	 * @param rows   The Example each sample was taken from, counted from
+	 *               offset.
+	 * @param count  The number of samples.
+	 * @param out    Where to store the four sums.
+	 */
+	public static void sums(byte[] pred, int offset, double[] a, double[] b,
+							int[] rows, int count, double[] out){
+		double signedA = 0.0, coveredA = 0.0, signedB = 0.0, coveredB = 0.0;
+		if(b == null){
+			for(int i = 0; i < count; i++){
+				int p = pred[offset + rows[i]];
+				int c = p & 1;
+				signedA += p * a[i];
+				coveredA += c * a[i];
+			}
+		}
+		else{
+			for(int i = 0; i < count; i++){
+				int p = pred[offset + rows[i]];
+				int c = p & 1;
+				signedA += p * a[i];
+				coveredA += c * a[i];
+				signedB += p * b[i];
+				coveredB += c * b[i];
+			}
+		}
+		out[0] = signedA;
+		out[1] = coveredA;
+		out[2] = signedB;
+		out[3] = coveredB;
+	}
+}
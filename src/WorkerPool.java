@@ -0,0 +1,165 @@
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * Author:      Grant Kurtz
+ * <p/>
+ * The coordinator's side of distributed training. Each LearnWorker owns every
+ * Hypothesis whose index, modulo the number of workers, is its shard number,
+ * and holds the predictions for only those. Every round the Example weights
+ * are sent to all workers at once, each finds its best local candidate, and
+ * the best of those is the round's model.
+ */
+public class WorkerPool{
+
+	// The commands a worker understands.
+	public static final int DONE = 0;
+	public static final int BEST = 1;
+	public static final int PREDICTIONS = 2;
+
+	// Which set of Examples a worker should return predictions for.
+	public static final int TRAINING = 0;
+	public static final int VALIDATION = 1;
+
+	private Socket[] sockets;
+	private DataInputStream[] in;
+	private DataOutputStream[] out;
+
+	/**
+	 * Connects to every worker and has each one load its shard.
+	 *
+	 * @param addresses  Where each worker is listening, as host:port.
+	 * @param args       The arguments Learn was run with, so each worker
+	 *                   builds the same Hypothesis and Examples.
+	 * @param kept       The index of each Hypothesis kept by pruning, or null
+	 *                   if none were pruned. Workers don't prune themselves.
+	 * @param hypothesis The number of Hypothesis the coordinator kept.
+	 * @param training   The number of training Examples.
+	 * @param validation The number of validation Examples.
+	 * @throws IOException If a worker can't be reached, or doesn't agree on
+	 *                     the data.
+	 */
+	public WorkerPool(String[] addresses, String[] args, int[] kept,
+					  int hypothesis, int training, int validation)
+			throws IOException{
+		sockets = new Socket[addresses.length];
+		in = new DataInputStream[addresses.length];
+		out = new DataOutputStream[addresses.length];
+		for(int w = 0; w < addresses.length; w++){
+			String[] hostPort = addresses[w].split(":");
+			if(hostPort.length != 2){
+				throw new IOException("Expected host:port, got '"
+									  + addresses[w] + "'");
+			}
+			sockets[w] = new Socket(hostPort[0],
+									Integer.parseInt(hostPort[1]));
+			in[w] = new DataInputStream(new BufferedInputStream(
+					sockets[w].getInputStream()));
+			out[w] = new DataOutputStream(new BufferedOutputStream(
+					sockets[w].getOutputStream()));
+			out[w].writeInt(w);
+			out[w].writeInt(addresses.length);
+			out[w].writeInt(args.length);
+			for(String arg : args){
+				out[w].writeUTF(arg);
+			}
+			out[w].writeInt(kept == null ? -1 : kept.length);
+			if(kept != null){
+				for(int h : kept){
+					out[w].writeInt(h);
+				}
+			}
+			out[w].flush();
+		}
+
+		// Loading happens in parallel, the workers only answer once done
+		for(int w = 0; w < addresses.length; w++){
+			if(in[w].readInt() != hypothesis || in[w].readInt() != training
+			   || in[w].readInt() != validation){
+				throw new IOException("Worker at '" + addresses[w]
+									  + "' loaded different data!");
+			}
+		}
+	}
+
+	/**
+	 * See Candidates.best(), the search is spread across every worker.
+	 */
+	public int best(double[] a, double[] b, int[] rows, int count,
+					double total, double[] sums) throws IOException{
+		for(DataOutputStream o : out){
+			o.writeInt(BEST);
+			o.writeDouble(total);
+			o.writeInt(rows == null ? -1 : count);
+			o.writeBoolean(b != null);
+			int length = rows == null ? a.length : count;
+			if(rows != null){
+				for(int i = 0; i < count; i++){
+					o.writeInt(rows[i]);
+				}
+			}
+			for(int i = 0; i < length; i++){
+				o.writeDouble(a[i]);
+			}
+			if(b != null){
+				for(int i = 0; i < length; i++){
+					o.writeDouble(b[i]);
+				}
+			}
+			o.flush();
+		}
+
+		int bestModel = -1;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for(DataInputStream i : in){
+			int model = i.readInt();
+			double score = i.readDouble();
+			double s0 = i.readDouble(), s1 = i.readDouble(),
+					s2 = i.readDouble(), s3 = i.readDouble();
+
+			// Ties go to the lowest index, as they would in one process
+			if(model >= 0 && (bestModel < 0 || score > bestScore
+							  || (score == bestScore && model < bestModel))){
+				bestModel = model;
+				bestScore = score;
+				sums[0] = s0;
+				sums[1] = s1;
+				sums[2] = s2;
+				sums[3] = s3;
+			}
+		}
+		return bestModel < 0 ? 0 : bestModel;
+	}
+
+	/**
+	 * @param view TRAINING or VALIDATION.
+	 * @param h    The Hypothesis to fetch.
+	 * @return The predictions of the Hypothesis, from the worker that owns it.
+	 */
+	public byte[] predictions(int view, int h) throws IOException{
+		int w = h % out.length;
+		out[w].writeInt(PREDICTIONS);
+		out[w].writeInt(view);
+		out[w].writeInt(h);
+		out[w].flush();
+		byte[] pred = new byte[in[w].readInt()];
+		in[w].readFully(pred);
+		return pred;
+	}
+
+	/**
+	 * Tells every worker training is over, and hangs up.
+	 */
+	public void close(){
+		for(int w = 0; w < sockets.length; w++){
+			try{
+				out[w].writeInt(DONE);
+				out[w].flush();
+				sockets[w].close();
+			}
+			catch(IOException e){
+				// Nothing left to tell the worker anyway
+			}
+		}
+	}
+}